@@ -13,6 +13,7 @@ import java.io.FileOutputStream;
 import java.io.InputStream;
 
 import hu.agocs.rxmp4parser.RxMp4Parser;
+import hu.agocs.rxmp4parser.android.AndroidLogger;
 import hu.agocs.rxmp4parser.operators.CropMovie;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.functions.Action1;
@@ -27,6 +28,8 @@ public class MainActivity extends AppCompatActivity {
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
+        AndroidLogger.install();
+
         final File f = new File(getCacheDir() + "/sample.mp4");
         if (!f.exists())
             try {
@@ -0,0 +1,89 @@
+package hu.agocs.rxmp4parser.benchmark;
+
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import hu.agocs.rxmp4parser.MovieHandle;
+import hu.agocs.rxmp4parser.RxMp4Parser;
+import rx.Observable;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ConcatenateBenchmark {
+
+    @Param({"2", "8"})
+    public int inputs;
+
+    // every input is parsed through its own handle, which is closed once the invocation is done
+    private List<Observable<Movie>> sources(FixtureState fixture, List<MovieHandle> handles) {
+        List<Observable<Movie>> sources = new ArrayList<>(inputs);
+        for (int i = 0; i < inputs; i++) {
+            final MovieHandle handle = new MovieHandle(fixture.input);
+            handles.add(handle);
+            sources.add(Observable.defer(new Func0<Observable<Movie>>() {
+                @Override
+                public Observable<Movie> call() {
+                    try {
+                        return Observable.just(handle.open());
+                    } catch (IOException e) {
+                        return Observable.error(e);
+                    }
+                }
+            }));
+        }
+        return sources;
+    }
+
+    @Benchmark
+    public void concatenate(FixtureState fixture, Blackhole blackhole) throws IOException {
+        List<MovieHandle> handles = new ArrayList<>(inputs);
+        try {
+            consume(RxMp4Parser.concatenate(sources(fixture, handles)).toBlocking().single(), blackhole);
+        } finally {
+            close(handles);
+        }
+    }
+
+    @Benchmark
+    public void concatenateParallel(FixtureState fixture, Blackhole blackhole) throws IOException {
+        List<MovieHandle> handles = new ArrayList<>(inputs);
+        try {
+            Movie movie = RxMp4Parser.concatenate(sources(fixture, handles), Schedulers.computation(),
+                    Runtime.getRuntime().availableProcessors()).toBlocking().single();
+            consume(movie, blackhole);
+        } finally {
+            close(handles);
+        }
+    }
+
+    private static void close(List<MovieHandle> handles) throws IOException {
+        for (MovieHandle handle : handles) {
+            handle.close();
+        }
+    }
+
+    // the appended tracks are views, so touch their sample tables the way a writer would
+    private static void consume(Movie movie, Blackhole blackhole) {
+        for (Track track : movie.getTracks()) {
+            blackhole.consume(track.getSamples().size());
+            blackhole.consume(track.getSampleDurations());
+            blackhole.consume(track.getSyncSamples());
+        }
+    }
+}
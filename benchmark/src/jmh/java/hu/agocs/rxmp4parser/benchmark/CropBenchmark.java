@@ -0,0 +1,83 @@
+package hu.agocs.rxmp4parser.benchmark;
+
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import hu.agocs.rxmp4parser.MovieClipper;
+import hu.agocs.rxmp4parser.MovieHandle;
+import hu.agocs.rxmp4parser.RxMp4Parser;
+import hu.agocs.rxmp4parser.Utils;
+import hu.agocs.rxmp4parser.operators.CropMovie;
+import rx.Observable;
+import rx.functions.Func1;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CropBenchmark {
+
+    @State(Scope.Thread)
+    public static class ParsedState {
+
+        MovieHandle handle;
+        MovieClipper clipper;
+        Track videoTrack;
+        double duration;
+        // moves the cut points through the whole track, so every lookup hits a different GOP
+        double time;
+
+        @Setup(Level.Trial)
+        public void parse(FixtureState fixture) throws IOException {
+            handle = new MovieHandle(fixture.input);
+            Movie movie = handle.open();
+            clipper = new MovieClipper(movie);
+            videoTrack = RxMp4Parser.extractVideoTrack(movie).toBlocking().single();
+            duration = fixture.duration;
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            handle.close();
+        }
+
+        double nextTime() {
+            time += 0.37;
+            if (time >= duration) {
+                time -= duration;
+            }
+            return time;
+        }
+    }
+
+    @Benchmark
+    public Movie crop(final FixtureState fixture) {
+        return RxMp4Parser.withMovie(fixture.input, new Func1<Movie, Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call(Movie movie) {
+                return Observable.just(movie).lift(new CropMovie(fixture.duration * 0.25, fixture.duration * 0.75));
+            }
+        }).toBlocking().single();
+    }
+
+    @Benchmark
+    public Movie clipParsed(ParsedState state) {
+        double from = state.nextTime();
+        return state.clipper.clip(from * 0.5, from);
+    }
+
+    @Benchmark
+    public double correctTimeToSyncSample(ParsedState state) {
+        return Utils.correctTimeToSyncSample(state.videoTrack, state.nextTime(), false);
+    }
+}
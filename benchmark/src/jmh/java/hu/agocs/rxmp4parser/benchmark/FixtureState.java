@@ -0,0 +1,47 @@
+package hu.agocs.rxmp4parser.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+import hu.agocs.rxmp4parser.fixtures.SyntheticMp4;
+
+/**
+ * The input file of a benchmark, generated by {@link SyntheticMp4} from the parameters below. They
+ * can be overridden on the JMH command line, for example with -p sampleCount=90000.
+ */
+@State(Scope.Benchmark)
+public class FixtureState {
+
+    @Param({"2"})
+    public int trackCount;
+
+    @Param({"7500"})
+    public int sampleCount;
+
+    @Param({"25"})
+    public int gopLength;
+
+    @Param({"300"})
+    public double duration;
+
+    public File input;
+
+    @Setup(Level.Trial)
+    public void writeInput() throws IOException {
+        input = new SyntheticMp4(trackCount, sampleCount, gopLength, duration).writeTemporary();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteInput() {
+        if (input != null && !input.delete()) {
+            input.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package hu.agocs.rxmp4parser.benchmark;
+
+import org.mp4parser.muxer.Movie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import hu.agocs.rxmp4parser.MovieHandle;
+import hu.agocs.rxmp4parser.RxMp4Parser;
+import hu.agocs.rxmp4parser.operators.CropMovie;
+import rx.Observable;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OutputBenchmark {
+
+    @State(Scope.Thread)
+    public static class OutputState {
+
+        MovieHandle handle;
+        Movie movie;
+        Movie cropped;
+        File output;
+
+        @Setup(Level.Trial)
+        public void parse(FixtureState fixture) throws IOException {
+            handle = new MovieHandle(fixture.input);
+            movie = handle.open();
+            cropped = Observable.just(movie).lift(new CropMovie(fixture.duration * 0.25, fixture.duration * 0.75))
+                    .toBlocking().single();
+            output = File.createTempFile("output-", ".mp4");
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteOutput() throws IOException {
+            handle.close();
+            if (output != null && !output.delete()) {
+                output.deleteOnExit();
+            }
+        }
+    }
+
+    @Benchmark
+    public File output(OutputState state) {
+        return RxMp4Parser.output(state.movie, state.output).toBlocking().single();
+    }
+
+    @Benchmark
+    public File outputCropped(OutputState state) {
+        return RxMp4Parser.output(state.cropped, state.output).toBlocking().single();
+    }
+}
@@ -0,0 +1,36 @@
+package hu.agocs.rxmp4parser.benchmark;
+
+import org.mp4parser.muxer.Movie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import hu.agocs.rxmp4parser.RxMp4Parser;
+import hu.agocs.rxmp4parser.TrackInfo;
+import rx.Observable;
+import rx.functions.Func1;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseBenchmark {
+
+    // parses the input and closes it again, so no file is left open between invocations
+    @Benchmark
+    public int from(FixtureState fixture) {
+        return RxMp4Parser.withMovie(fixture.input, new Func1<Movie, Observable<Integer>>() {
+            @Override
+            public Observable<Integer> call(Movie movie) {
+                return Observable.just(movie.getTracks().size());
+            }
+        }).toBlocking().single();
+    }
+
+    @Benchmark
+    public List<TrackInfo> probeTracks(FixtureState fixture) {
+        return RxMp4Parser.probeTracks(fixture.input).toBlocking().single();
+    }
+}
@@ -0,0 +1,174 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.boxes.iso14496.part12.MovieBox;
+import org.mp4parser.boxes.iso14496.part12.SampleDescriptionBox;
+import org.mp4parser.boxes.iso14496.part12.TrackBox;
+import org.mp4parser.muxer.AbstractTrack;
+import org.mp4parser.muxer.Sample;
+import org.mp4parser.muxer.TrackMetaData;
+import org.mp4parser.muxer.tracks.AppendTrack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks from the moov boxes alone whether files can be concatenated, before any of them is
+ * parsed. The inputs are added in the order of the concatenation, and every one is compared with
+ * the ones added before it. The tracks are grouped the same way the concatenation groups them, by
+ * handler and by their index among the tracks with the same handler. Every input needs the same
+ * groups, and the tracks of a group need the same timescale and codec, and sample descriptions
+ * which mp4parser's AppendTrack can merge. The merge itself is run on tracks without samples, so
+ * the result is the same as the one of the real append.
+ */
+public class ConcatenationCheck {
+
+    private final Map<String, HeaderTrack> tracks = new LinkedHashMap<>();
+    private File firstFile;
+
+    /**
+     * @throws IncompatibleInputException if the file can not be appended to the ones added before
+     */
+    public void add(File file, MovieBox moov) throws IncompatibleInputException {
+        add(new Input(file, moov));
+    }
+
+    void add(Input input) throws IncompatibleInputException {
+        File file = input.file;
+        if (firstFile == null) {
+            if (input.tracks.isEmpty()) {
+                throw new IncompatibleInputException(file, "There are no tracks.");
+            }
+            firstFile = file;
+            tracks.putAll(input.tracks);
+            return;
+        }
+        if (!input.tracks.keySet().equals(tracks.keySet())) {
+            throw new IncompatibleInputException(file, "The tracks " + input.tracks.keySet() + " do not match the tracks "
+                    + tracks.keySet() + " of " + firstFile + ".");
+        }
+        for (Map.Entry<String, HeaderTrack> entry : input.tracks.entrySet()) {
+            String key = entry.getKey();
+            tracks.put(key, append(file, key, tracks.get(key), entry.getValue()));
+        }
+    }
+
+    private HeaderTrack append(File file, String key, HeaderTrack previous, HeaderTrack track) throws IncompatibleInputException {
+        if (previous.getTrackMetaData().getTimescale() != track.getTrackMetaData().getTimescale()) {
+            throw new IncompatibleInputException(file, "The " + key + " timescale " + track.getTrackMetaData().getTimescale()
+                    + " differs from " + previous.getTrackMetaData().getTimescale() + " of " + firstFile + ".");
+        }
+        String codec = codecOf(track.getSampleDescriptionBox());
+        String previousCodec = codecOf(previous.getSampleDescriptionBox());
+        if (!codec.equals(previousCodec)) {
+            throw new IncompatibleInputException(file, "The " + key + " codec " + codec + " differs from " + previousCodec
+                    + " of " + firstFile + ".");
+        }
+        try {
+            if (Arrays.equals(toBytes(previous.getSampleDescriptionBox()), toBytes(track.getSampleDescriptionBox()))) {
+                return previous;
+            }
+            SampleDescriptionBox merged = new AppendTrack(previous, track).getSampleDescriptionBox();
+            return new HeaderTrack(previous.getName(), previous.getHandler(), previous.getTrackMetaData(), merged);
+        } catch (IOException | RuntimeException e) {
+            throw new IncompatibleInputException(file, "The " + key + " sample description can not be merged with "
+                    + firstFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String codecOf(SampleDescriptionBox stsd) {
+        return stsd.getSampleEntry().getType();
+    }
+
+    private static byte[] toBytes(SampleDescriptionBox stsd) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        stsd.getBox(Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The tracks of an input by handler and index. It can be created on any thread, the inputs
+     * only have to be added in order.
+     */
+    static class Input {
+
+        private final File file;
+        private final Map<String, HeaderTrack> tracks = new LinkedHashMap<>();
+
+        Input(File file, MovieBox moov) throws IncompatibleInputException {
+            this.file = file;
+            Map<String, Integer> handlerCounts = new HashMap<>();
+            for (TrackBox trackBox : moov.getBoxes(TrackBox.class)) {
+                TrackInfo info = TrackInfo.of(trackBox);
+                String handler = info.getHandler();
+                Integer count = handlerCounts.get(handler);
+                int index = count == null ? 0 : count;
+                handlerCounts.put(handler, index + 1);
+
+                String key = handler + "#" + index;
+                if (info.getCodec() == null) {
+                    throw new IncompatibleInputException(file, "The " + key + " track has no sample description.");
+                }
+                tracks.put(key, new HeaderTrack(file.getName(), handler, info.getTrackMetaData(),
+                        trackBox.getSampleTableBox().getSampleDescriptionBox()));
+            }
+        }
+
+        File getFile() {
+            return file;
+        }
+    }
+
+    /**
+     * A track with the headers of a track box and no samples.
+     */
+    private static class HeaderTrack extends AbstractTrack {
+
+        private final String handler;
+        private final TrackMetaData trackMetaData;
+        private final SampleDescriptionBox sampleDescriptionBox;
+
+        HeaderTrack(String name, String handler, TrackMetaData trackMetaData, SampleDescriptionBox sampleDescriptionBox) {
+            super(name);
+            this.handler = handler;
+            this.trackMetaData = trackMetaData;
+            this.sampleDescriptionBox = sampleDescriptionBox;
+        }
+
+        @Override
+        public SampleDescriptionBox getSampleDescriptionBox() {
+            return sampleDescriptionBox;
+        }
+
+        @Override
+        public long[] getSampleDurations() {
+            return new long[0];
+        }
+
+        @Override
+        public TrackMetaData getTrackMetaData() {
+            return trackMetaData;
+        }
+
+        @Override
+        public String getHandler() {
+            return handler;
+        }
+
+        @Override
+        public List<Sample> getSamples() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns an edit decision list into a single Movie. Every source is parsed and indexed once, no
+ * matter how many segments are cut from it. The clipped tracks of all segments are appended in
+ * one level, grouped by handler and by their index among the tracks with the same handler. Every
+ * segment has to supply a track to every group, otherwise rendering fails.
+ */
+public class EditListRenderer {
+
+    public static Movie render(List<EditSegment> segments) throws IOException {
+        return render(segments, new ArrayList<MovieHandle>());
+    }
+
+    /**
+     * Same as {@link #render(List)}, but every source is opened through a MovieHandle which is
+     * added to the given list, also when rendering fails. Closing them ends the returned Movie.
+     */
+    public static Movie render(List<EditSegment> segments, List<MovieHandle> handles) throws IOException {
+        Map<String, MovieClipper> clippers = new HashMap<>();
+        Map<String, List<Track>> groups = new LinkedHashMap<>();
+        List<List<Track>> segmentTracks = new ArrayList<>(segments.size());
+        for (EditSegment segment : segments) {
+            File source = segment.getSource();
+            String path = source.getCanonicalPath();
+            MovieClipper clipper = clippers.get(path);
+            if (clipper == null) {
+                if (!source.exists()) {
+                    throw new FileNotFoundException(source.getAbsolutePath());
+                }
+                MovieHandle handle = new MovieHandle(source);
+                handles.add(handle);
+                clipper = new MovieClipper(handle.open());
+                clippers.put(path, clipper);
+            }
+
+            List<Track> tracks = clipper.clipTracks(segment.getRange().getFrom(), segment.getRange().getTo());
+            Utils.groupByHandler(groups, tracks);
+            segmentTracks.add(tracks);
+        }
+        // a group missing from a segment would be muxed out of sync with the other groups
+        for (Map.Entry<String, List<Track>> group : groups.entrySet()) {
+            if (group.getValue().size() != segments.size()) {
+                throw new IOException(missingTrackMessage(segments, segmentTracks, group.getKey(), groups.keySet()));
+            }
+        }
+
+        Movie movie = new Movie();
+        for (List<Track> group : groups.values()) {
+            movie.addTrack(Utils.append(group));
+        }
+        return movie;
+    }
+
+    private static String missingTrackMessage(List<EditSegment> segments, List<List<Track>> segmentTracks,
+                                              String key, Set<String> keys) {
+        for (int i = 0; i < segments.size(); i++) {
+            Map<String, List<Track>> groups = new LinkedHashMap<>();
+            Utils.groupByHandler(groups, segmentTracks.get(i));
+            if (!groups.containsKey(key)) {
+                return "Segment " + i + " (" + segments.get(i).getSource() + ") has no " + key
+                        + " track, every segment needs the tracks " + keys + ".";
+            }
+        }
+        return "Every segment needs the tracks " + keys + ".";
+    }
+}
@@ -0,0 +1,31 @@
+package hu.agocs.rxmp4parser;
+
+import java.io.File;
+
+public class EditSegment {
+
+    private final File source;
+    private final TimeRange range;
+
+    public EditSegment(File source, TimeRange range) {
+        this.source = source;
+        this.range = range;
+    }
+
+    public EditSegment(File source, double from, double to) {
+        this(source, new TimeRange(from, to));
+    }
+
+    public File getSource() {
+        return source;
+    }
+
+    public TimeRange getRange() {
+        return range;
+    }
+
+    @Override
+    public String toString() {
+        return "EditSegment{" + source + ", " + range + "}";
+    }
+}
@@ -0,0 +1,177 @@
+package hu.agocs.rxmp4parser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Mp4Metrics} that keeps a histogram of the durations of every stage in memory, with
+ * power of two buckets from one microsecond up. The totals of the sample and byte counts are
+ * kept too. Meant for tests and benchmarks, {@link #toString()} prints a short summary.
+ */
+public class HistogramMetrics implements Mp4Metrics {
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    @Override
+    public synchronized void onStage(String stage, long durationNanos, long sampleCount, long byteCount) {
+        Stage histogram = stages.get(stage);
+        if (histogram == null) {
+            histogram = new Stage(stage);
+            stages.put(stage, histogram);
+        }
+        histogram.add(durationNanos, sampleCount, byteCount);
+    }
+
+    /**
+     * Returns a copy of the histogram of the given stage, or null if it has not been reported.
+     */
+    public synchronized Stage get(String stage) {
+        Stage histogram = stages.get(stage);
+        return histogram == null ? null : histogram.copy();
+    }
+
+    /**
+     * Returns a copy of the histograms of every reported stage, in the order of their first report.
+     */
+    public synchronized List<Stage> getStages() {
+        List<Stage> copies = new ArrayList<>(stages.size());
+        for (Stage histogram : stages.values()) {
+            copies.add(histogram.copy());
+        }
+        return copies;
+    }
+
+    public synchronized void reset() {
+        stages.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage histogram : getStages()) {
+            builder.append(histogram).append('\n');
+        }
+        return builder.toString();
+    }
+
+    public static class Stage {
+
+        private static final int BUCKET_COUNT = 32;
+
+        private final String name;
+        private final long[] buckets;
+        private long count;
+        private long totalNanos;
+        private long minNanos = Long.MAX_VALUE;
+        private long maxNanos;
+        private long sampleCount;
+        private long byteCount;
+
+        private Stage(String name) {
+            this.name = name;
+            this.buckets = new long[BUCKET_COUNT];
+        }
+
+        private void add(long durationNanos, long samples, long bytes) {
+            buckets[bucket(durationNanos)]++;
+            count++;
+            totalNanos += durationNanos;
+            minNanos = Math.min(minNanos, durationNanos);
+            maxNanos = Math.max(maxNanos, durationNanos);
+            if (samples > 0) {
+                sampleCount += samples;
+            }
+            if (bytes > 0) {
+                byteCount += bytes;
+            }
+        }
+
+        private Stage copy() {
+            Stage copy = new Stage(name);
+            System.arraycopy(buckets, 0, copy.buckets, 0, BUCKET_COUNT);
+            copy.count = count;
+            copy.totalNanos = totalNanos;
+            copy.minNanos = minNanos;
+            copy.maxNanos = maxNanos;
+            copy.sampleCount = sampleCount;
+            copy.byteCount = byteCount;
+            return copy;
+        }
+
+        // bucket 0 holds everything under 2 microseconds, bucket i the durations from 2^i microseconds
+        private static int bucket(long durationNanos) {
+            long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(durationNanos));
+            return Math.min(BUCKET_COUNT - 1, 63 - Long.numberOfLeadingZeros(micros));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMinNanos() {
+            return count == 0 ? 0 : minNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        public long getByteCount() {
+            return byteCount;
+        }
+
+        /**
+         * Returns the number of reports per bucket, bucket i counts the durations from 2^i to
+         * 2^(i+1) microseconds.
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given percentile (0-100) of the
+         * durations, limited to the longest duration reported.
+         */
+        public long getPercentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(maxNanos, TimeUnit.MICROSECONDS.toNanos(2L << i));
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %d x, total %.3f ms, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms, %d samples, %d bytes",
+                    name, count, totalNanos / 1e6, getMeanNanos() / 1e6, getPercentileNanos(50) / 1e6,
+                    getPercentileNanos(99) / 1e6, maxNanos / 1e6, sampleCount, byteCount);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package hu.agocs.rxmp4parser;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Thrown when an input of a concatenation can not be appended to the inputs before it.
+ */
+public class IncompatibleInputException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final File file;
+
+    public IncompatibleInputException(File file, String message) {
+        super(file + ": " + message);
+        this.file = file;
+    }
+
+    public IncompatibleInputException(File file, String message, Throwable cause) {
+        super(file + ": " + message, cause);
+        this.file = file;
+    }
+
+    /**
+     * Returns the first input that does not fit the ones before it.
+     */
+    public File getFile() {
+        return file;
+    }
+}
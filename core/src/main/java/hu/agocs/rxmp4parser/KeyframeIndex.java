@@ -0,0 +1,330 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.IsoFile;
+import org.mp4parser.boxes.iso14496.part12.MediaHeaderBox;
+import org.mp4parser.boxes.iso14496.part12.MovieBox;
+import org.mp4parser.boxes.iso14496.part12.MovieExtendsBox;
+import org.mp4parser.boxes.iso14496.part12.SampleTableBox;
+import org.mp4parser.boxes.iso14496.part12.SyncSampleBox;
+import org.mp4parser.boxes.iso14496.part12.TimeToSampleBox;
+import org.mp4parser.boxes.iso14496.part12.TrackBox;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.tools.ByteBufferByteChannel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import hu.agocs.rxmp4parser.annotation.Nullable;
+import hu.agocs.rxmp4parser.io.FileChannelSource;
+import hu.agocs.rxmp4parser.io.MovieReader;
+import hu.agocs.rxmp4parser.io.MovieWriter;
+
+/**
+ * The {@link SampleTimeline}s of every track of a file, optionally stored in a small sidecar
+ * file, so clips of the same file can be cut by several processes without computing the sync
+ * sample times again. The sidecar is next to the file by default, but it can be put anywhere, or
+ * left out. The sidecar is only used if the size, the modification time and the CRC32 of the
+ * moov box of the file are the same as when it was written. A sidecar of another format version, a
+ * stale or a damaged one is ignored and written again.
+ * <p>
+ * Format, big endian: magic "RXKI", version, file size, modification time, moov CRC32, track
+ * count, then per track the timescale, the sample durations as (count, duration) runs and the
+ * sync sample numbers as differences, and finally the CRC32 of everything before it.
+ */
+public class KeyframeIndex {
+
+    private static final String TAG = "KeyframeIndex";
+
+    public static final String SIDECAR_EXTENSION = ".kfi";
+
+    private static final int MAGIC = 0x52584b49;
+    private static final int VERSION = 1;
+    private static final long MAX_MOOV_SIZE = 64 * 1024 * 1024;
+
+    private final long sourceLength;
+    private final long sourceLastModified;
+    private final long movieBoxCrc;
+    private final List<SampleTimeline> timelines;
+
+    KeyframeIndex(long sourceLength, long sourceLastModified, long movieBoxCrc, List<SampleTimeline> timelines) {
+        this.sourceLength = sourceLength;
+        this.sourceLastModified = sourceLastModified;
+        this.movieBoxCrc = movieBoxCrc;
+        this.timelines = Collections.unmodifiableList(timelines);
+    }
+
+    public static File sidecarFile(File source) {
+        return new File(source.getAbsolutePath() + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * Returns the sidecar of the file in the given directory, for sources in read-only or shared
+     * directories.
+     */
+    public static File sidecarFile(File source, File directory) {
+        return new File(directory, source.getName() + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * Loads the sidecar next to the file if it is valid, otherwise builds the index from the moov
+     * box and tries to write the sidecar. Failing to write it is not an error.
+     */
+    public static KeyframeIndex of(File source) throws IOException {
+        return of(source, sidecarFile(source));
+    }
+
+    /**
+     * Same as {@link #of(File)} with the given sidecar. Without a sidecar the index is built from
+     * the moov box every time and nothing is written.
+     */
+    public static KeyframeIndex of(File source, @Nullable File sidecar) throws IOException {
+        FileChannelSource input = new FileChannelSource(source);
+        try {
+            long length = source.length();
+            long lastModified = source.lastModified();
+            ByteBuffer moov = MovieReader.readMovieBoxBytes(input, MAX_MOOV_SIZE);
+            long crc = crc(moov);
+
+            KeyframeIndex index = sidecar != null ? load(sidecar, length, lastModified, crc) : null;
+            if (index == null) {
+                index = new KeyframeIndex(length, lastModified, crc, buildTimelines(source, input, moov));
+                if (sidecar == null) {
+                    return index;
+                }
+                try {
+                    index.save(sidecar);
+                } catch (IOException e) {
+                    RxMp4Parser.getLogger().error(TAG, e.getMessage());
+                }
+            }
+            return index;
+        } finally {
+            input.close();
+        }
+    }
+
+    public List<SampleTimeline> getTimelines() {
+        return timelines;
+    }
+
+    /**
+     * Returns whether the timelines fit the tracks of the Movie, i.e. the track count and the
+     * sample counts are the same.
+     */
+    public boolean matches(Movie movie) {
+        List<Track> tracks = movie.getTracks();
+        if (tracks.size() != timelines.size()) {
+            return false;
+        }
+        for (int i = 0; i < tracks.size(); i++) {
+            if (tracks.get(i).getSamples().size() != timelines.get(i).getSampleCount()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public MovieClipper clipper(Movie movie) {
+        return matches(movie) ? new MovieClipper(movie, timelines) : new MovieClipper(movie);
+    }
+
+    private static List<SampleTimeline> buildTimelines(File file, FileChannelSource source, ByteBuffer moovBytes) throws IOException {
+        MovieBox moov = new IsoFile(new ByteBufferByteChannel(moovBytes.duplicate())).getMovieBox();
+        List<SampleTimeline> timelines = new ArrayList<>();
+        if (!moov.getBoxes(MovieExtendsBox.class).isEmpty()) {
+            // the samples of a fragmented file are described by its fragments
+            for (Track track : MovieReader.read(file, source).getTracks()) {
+                timelines.add(SampleTimeline.of(track));
+            }
+            return timelines;
+        }
+        for (TrackBox trackBox : moov.getBoxes(TrackBox.class)) {
+            MediaHeaderBox mdhd = trackBox.getMediaBox().getMediaHeaderBox();
+            SampleTableBox stbl = trackBox.getSampleTableBox();
+            List<TimeToSampleBox.Entry> entries = stbl.getTimeToSampleBox().getEntries();
+            long sampleCount = 0;
+            for (TimeToSampleBox.Entry entry : entries) {
+                sampleCount += entry.getCount();
+            }
+            long[] decodingTimes = new long[(int) sampleCount + 1];
+            int sample = 0;
+            for (TimeToSampleBox.Entry entry : entries) {
+                for (long i = 0; i < entry.getCount(); i++) {
+                    decodingTimes[sample + 1] = decodingTimes[sample] + entry.getDelta();
+                    sample++;
+                }
+            }
+            SyncSampleBox stss = stbl.getSyncSampleBox();
+            timelines.add(new SampleTimeline(mdhd.getTimescale(), decodingTimes, stss != null ? stss.getSampleNumber() : null));
+        }
+        return timelines;
+    }
+
+    private static long crc(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = bytes.duplicate();
+        byte[] chunk = new byte[8192];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return crc.getValue();
+    }
+
+    private static KeyframeIndex load(File sidecar, long length, long lastModified, long movieBoxCrc) {
+        if (!sidecar.isFile() || sidecar.length() < 12 || sidecar.length() > MAX_MOOV_SIZE) {
+            return null;
+        }
+        try {
+            byte[] bytes = new byte[(int) sidecar.length()];
+            DataInputStream file = new DataInputStream(new FileInputStream(sidecar));
+            try {
+                file.readFully(bytes);
+            } finally {
+                file.close();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 8);
+            if (ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != crc.getValue()) {
+                return null;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            if (in.readLong() != length || in.readLong() != lastModified || in.readLong() != movieBoxCrc) {
+                return null;
+            }
+            int trackCount = in.readInt();
+            if (trackCount < 0) {
+                return null;
+            }
+            List<SampleTimeline> timelines = new ArrayList<>();
+            for (int t = 0; t < trackCount; t++) {
+                timelines.add(readTimeline(in));
+            }
+            return new KeyframeIndex(length, lastModified, movieBoxCrc, timelines);
+        } catch (EOFException | RuntimeException e) {
+            return null;
+        } catch (IOException e) {
+            RxMp4Parser.getLogger().error(TAG, e.getMessage());
+            return null;
+        }
+    }
+
+    private static SampleTimeline readTimeline(DataInputStream in) throws IOException {
+        long timescale = in.readLong();
+        int sampleCount = in.readInt();
+        if (timescale <= 0 || sampleCount < 0) {
+            throw new IOException("Invalid track in the keyframe index");
+        }
+        long[] decodingTimes = new long[sampleCount + 1];
+        int sample = 0;
+        while (sample < sampleCount) {
+            int count = in.readInt();
+            long duration = in.readLong();
+            if (count <= 0 || count > sampleCount - sample) {
+                throw new IOException("Invalid duration run in the keyframe index");
+            }
+            for (int i = 0; i < count; i++) {
+                decodingTimes[sample + 1] = decodingTimes[sample] + duration;
+                sample++;
+            }
+        }
+        int syncCount = in.readInt();
+        long[] syncSamples = null;
+        if (syncCount >= 0) {
+            syncSamples = new long[syncCount];
+            long previous = 0;
+            for (int i = 0; i < syncCount; i++) {
+                previous += in.readInt();
+                syncSamples[i] = previous;
+            }
+        }
+        return new SampleTimeline(timescale, decodingTimes, syncSamples);
+    }
+
+    /**
+     * Writes the sidecar into a temporary file first, so other processes never see half of it.
+     */
+    public void save(File sidecar) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sourceLength);
+        out.writeLong(sourceLastModified);
+        out.writeLong(movieBoxCrc);
+        out.writeInt(timelines.size());
+        for (SampleTimeline timeline : timelines) {
+            writeTimeline(out, timeline);
+        }
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        File directory = sidecar.getAbsoluteFile().getParentFile();
+        File temporaryFile = File.createTempFile("." + sidecar.getName() + ".", ".part", directory);
+        boolean written = false;
+        try {
+            FileOutputStream fos = new FileOutputStream(temporaryFile);
+            try {
+                bytes.writeTo(fos);
+            } finally {
+                fos.close();
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                temporaryFile.delete();
+            }
+        }
+        MovieWriter.moveTo(temporaryFile, sidecar);
+    }
+
+    private static void writeTimeline(DataOutputStream out, SampleTimeline timeline) throws IOException {
+        long[] decodingTimes = timeline.getDecodingTimes();
+        int sampleCount = timeline.getSampleCount();
+        out.writeLong(timeline.getTimescale());
+        out.writeInt(sampleCount);
+        int i = 0;
+        while (i < sampleCount) {
+            long duration = decodingTimes[i + 1] - decodingTimes[i];
+            int count = 1;
+            while (i + count < sampleCount && decodingTimes[i + count + 1] - decodingTimes[i + count] == duration) {
+                count++;
+            }
+            out.writeInt(count);
+            out.writeLong(duration);
+            i += count;
+        }
+        long[] syncSamples = timeline.getSyncSamples();
+        if (syncSamples == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(syncSamples.length);
+            long previous = 0;
+            for (long syncSample : syncSamples) {
+                out.writeInt((int) (syncSample - previous));
+                previous = syncSample;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package hu.agocs.rxmp4parser;
+
+/**
+ * Receives the errors logged by {@link RxMp4Parser}. Set it with
+ * {@link RxMp4Parser#setLogger(Logger)}, by default the errors are printed to System.err.
+ */
+public interface Logger {
+
+    Logger SYSTEM_ERR = new Logger() {
+        @Override
+        public void error(String tag, String message) {
+            System.err.println(tag + ": " + message);
+        }
+    };
+
+    Logger NONE = new Logger() {
+        @Override
+        public void error(String tag, String message) {
+        }
+    };
+
+    void error(String tag, String message);
+}
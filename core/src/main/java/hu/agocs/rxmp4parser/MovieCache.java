@@ -0,0 +1,284 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps parsed movies around so that files used over and over (intros, outros, sources of many
+ * clips) are only parsed once. Entries are keyed by the canonical path and are only used while the
+ * size and modification time of the file match. The least recently used entries are evicted once
+ * the entry count or the estimated size of the sample tables exceeds the limits. When several
+ * threads miss the same file at once, it is parsed only once and all of them get that result.
+ * <p>
+ * Every call returns a new Movie holding the cached tracks, so changing its track list does not
+ * affect the cache. The tracks themselves are shared and must not be modified. Hand the Movie back
+ * with {@link #release(Movie)} when it, and everything made from it, has been written, or use
+ * {@link RxMp4Parser#withMovie(File, MovieCache, rx.functions.Func1)} which does so. An entry
+ * which has been evicted, invalidated or cleared closes its file once all of its Movies have been
+ * released.
+ */
+public class MovieCache {
+
+    private static final String TAG = "MovieCache";
+
+    // sample offset, size and duration tables kept by the parsed tracks, per sample
+    private static final long BYTES_PER_SAMPLE = 32;
+    private static final long BYTES_PER_TRACK = 1024;
+
+    private final int maxEntries;
+    private final long maxSampleTableBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, FutureTask<Entry>> loading = new HashMap<>();
+    private final Map<Movie, Entry> handedOut = new IdentityHashMap<>();
+    private long sampleTableBytes;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public MovieCache(int maxEntries, long maxSampleTableBytes) {
+        this.maxEntries = maxEntries;
+        this.maxSampleTableBytes = maxSampleTableBytes;
+    }
+
+    public Movie get(final File file) throws IOException {
+        final String path = file.getCanonicalPath();
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        while (true) {
+            FutureTask<Entry> task;
+            boolean owner = false;
+            synchronized (this) {
+                Entry entry = entries.get(path);
+                if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+                    hitCount++;
+                    return acquire(entry);
+                }
+                task = loading.get(path);
+                if (task != null) {
+                    // another thread is parsing it already
+                    hitCount++;
+                } else {
+                    missCount++;
+                    task = new FutureTask<>(new Callable<Entry>() {
+                        @Override
+                        public Entry call() throws IOException {
+                            MovieHandle handle = new MovieHandle(file);
+                            return new Entry(handle, handle.open(), length, lastModified);
+                        }
+                    });
+                    loading.put(path, task);
+                    owner = true;
+                }
+            }
+
+            Entry entry;
+            if (owner) {
+                task.run();
+                try {
+                    entry = load(task);
+                } finally {
+                    synchronized (this) {
+                        loading.remove(path);
+                    }
+                }
+                List<Entry> removed;
+                Movie movie;
+                synchronized (this) {
+                    // the new entry is referenced before the limits are applied, so it stays open
+                    movie = acquire(entry);
+                    removed = put(path, entry);
+                }
+                closeAll(removed);
+                return movie;
+            }
+
+            entry = load(task);
+            synchronized (this) {
+                if (!entry.closed) {
+                    return acquire(entry);
+                }
+            }
+            // evicted and closed before this thread got to it, look it up again
+        }
+    }
+
+    /**
+     * Hands back a Movie returned by {@link #get(File)}. Movies which did not come from this cache
+     * or have already been released are ignored.
+     */
+    public void release(Movie movie) {
+        Entry entry;
+        synchronized (this) {
+            entry = handedOut.remove(movie);
+            if (entry == null) {
+                return;
+            }
+            entry.references--;
+            if (!entry.removed || entry.references > 0) {
+                return;
+            }
+            entry.closed = true;
+        }
+        close(entry);
+    }
+
+    public void invalidate(File file) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(file.getCanonicalPath());
+            if (entry == null || !remove(entry)) {
+                return;
+            }
+        }
+        close(entry);
+    }
+
+    public void clear() {
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (remove(entry)) {
+                    removed.add(entry);
+                }
+            }
+            entries.clear();
+            sampleTableBytes = 0;
+        }
+        closeAll(removed);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getSampleTableBytes() {
+        return sampleTableBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private static Entry load(FutureTask<Entry> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the movie to be parsed.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    // must be called with the lock held
+    private Movie acquire(Entry entry) {
+        Movie copy = new Movie(new ArrayList<>(entry.movie.getTracks()));
+        copy.setMatrix(entry.movie.getMatrix());
+        entry.references++;
+        handedOut.put(copy, entry);
+        return copy;
+    }
+
+    // must be called with the lock held, returns the entries which have to be closed
+    private List<Entry> put(String path, Entry entry) {
+        List<Entry> removed = new ArrayList<>();
+        Entry previous = entries.put(path, entry);
+        if (previous != null) {
+            sampleTableBytes -= previous.sampleTableBytes;
+            if (remove(previous)) {
+                removed.add(previous);
+            }
+        }
+        sampleTableBytes += entry.sampleTableBytes;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (eldest.hasNext() && (entries.size() > maxEntries || sampleTableBytes > maxSampleTableBytes)) {
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            sampleTableBytes -= evicted.sampleTableBytes;
+            evictionCount++;
+            if (remove(evicted)) {
+                removed.add(evicted);
+            }
+        }
+        return removed;
+    }
+
+    // must be called with the lock held, returns true if the entry can be closed right away
+    private boolean remove(Entry entry) {
+        entry.removed = true;
+        if (entry.references > 0 || entry.closed) {
+            return false;
+        }
+        entry.closed = true;
+        return true;
+    }
+
+    private static void closeAll(List<Entry> entries) {
+        for (Entry entry : entries) {
+            close(entry);
+        }
+    }
+
+    private static void close(Entry entry) {
+        try {
+            entry.handle.close();
+        } catch (IOException e) {
+            RxMp4Parser.getLogger().error(TAG, e.getMessage());
+        }
+    }
+
+    private static class Entry {
+
+        final MovieHandle handle;
+        final Movie movie;
+        final long length;
+        final long lastModified;
+        final long sampleTableBytes;
+
+        int references;
+        boolean removed;
+        boolean closed;
+
+        Entry(MovieHandle handle, Movie movie, long length, long lastModified) {
+            this.handle = handle;
+            this.movie = movie;
+            this.length = length;
+            this.lastModified = lastModified;
+            long bytes = 0;
+            for (Track track : movie.getTracks()) {
+                bytes += BYTES_PER_TRACK + BYTES_PER_SAMPLE * track.getSamples().size();
+            }
+            this.sampleTableBytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.muxer.tracks.ClippedTrack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuts clips out of a parsed {@link Movie} without modifying it. The sample timelines of the
+ * tracks are built once, so any number of clips can be taken from the same source.
+ */
+public class MovieClipper {
+
+    private final Movie movie;
+    private final List<Track> tracks;
+    private final List<SampleTimeline> timelines;
+
+    public MovieClipper(Movie movie) {
+        Mp4Metrics metrics = RxMp4Parser.getMetrics();
+        long start = metrics != Mp4Metrics.NONE ? System.nanoTime() : 0;
+        this.movie = movie;
+        this.tracks = new ArrayList<>(movie.getTracks());
+        this.timelines = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            timelines.add(SampleTimeline.of(track));
+        }
+        if (metrics != Mp4Metrics.NONE) {
+            metrics.onStage(Mp4Metrics.INDEX, System.nanoTime() - start, Utils.getSampleCount(tracks), -1);
+        }
+    }
+
+    /**
+     * Uses timelines built earlier, for example by a {@link KeyframeIndex}, instead of building them
+     * from the tracks. There has to be one timeline for every track, in the order of the tracks.
+     */
+    public MovieClipper(Movie movie, List<SampleTimeline> timelines) {
+        this.movie = movie;
+        this.tracks = new ArrayList<>(movie.getTracks());
+        if (timelines.size() != tracks.size()) {
+            throw new IllegalArgumentException("There are " + timelines.size() + " timelines for " + tracks.size() + " tracks.");
+        }
+        this.timelines = new ArrayList<>(timelines);
+    }
+
+    public Movie getMovie() {
+        return movie;
+    }
+
+    public List<SampleTimeline> getTimelines() {
+        return timelines;
+    }
+
+    public Movie clip(TimeRange range) {
+        return clip(range.getFrom(), range.getTo());
+    }
+
+    public List<Track> clipTracks(double from, double to) {
+        return clip(from, to).getTracks();
+    }
+
+    public Movie clip(double from, double to) {
+        if (to < from) {
+            throw new RuntimeException("The ending time is earlier than the start time.");
+        }
+
+        double startTime = from;
+        double endTime = to;
+
+        boolean timeCorrected = false;
+
+        // Here we try to find a track that has sync samples. Since we can only start decoding
+        // at such a sample we SHOULD make sure that the start of the new fragment is exactly
+        // such a frame
+        for (SampleTimeline timeline : timelines) {
+            if (timeline.hasSyncSamples()) {
+                if (timeCorrected) {
+                    // This exception here could be a false positive in case we have multiple tracks
+                    // with sync samples at exactly the same positions. E.g. a single movie containing
+                    // multiple qualities of the same video (Microsoft Smooth Streaming file)
+                    throw new RuntimeException("The startTime has already been corrected by another track with SyncSample. Not Supported.");
+                }
+                startTime = Utils.correctTimeToSyncSample(timeline, startTime, false);
+                endTime = Utils.correctTimeToSyncSample(timeline, endTime, true);
+                timeCorrected = true;
+            }
+        }
+
+        return cut(startTime, endTime);
+    }
+
+    /**
+     * Cuts the tracks between the given times as they are, without moving them to sync samples.
+     * A cut reaching the end of a track keeps its last sample.
+     */
+    public Movie cut(double startTime, double endTime) {
+        Mp4Metrics metrics = RxMp4Parser.getMetrics();
+        long start = metrics != Mp4Metrics.NONE ? System.nanoTime() : 0;
+        Movie clip = new Movie();
+        clip.setMatrix(movie.getMatrix());
+        for (int i = 0; i < tracks.size(); i++) {
+            SampleTimeline timeline = timelines.get(i);
+            long end = endTime >= timeline.getDuration() ? timeline.getSampleCount() : timeline.sampleAt(endTime);
+            clip.addTrack(new ClippedTrack(tracks.get(i), timeline.sampleAt(startTime), end));
+        }
+        if (metrics != Mp4Metrics.NONE) {
+            metrics.onStage(Mp4Metrics.CROP, System.nanoTime() - start, Utils.getSampleCount(clip.getTracks()), -1);
+        }
+        return clip;
+    }
+
+    /**
+     * Splits the movie into consecutive ranges of about targetDuration seconds. Every range starts
+     * on a sync sample: each cut is placed on the sync sample closest to targetDuration after the
+     * previous one, found in a single pass over the sync samples. Without sync samples the ranges
+     * are exactly targetDuration long. The last range ends with the longest track.
+     */
+    public List<TimeRange> segments(double targetDuration) {
+        if (targetDuration <= 0) {
+            throw new IllegalArgumentException("The target duration has to be positive.");
+        }
+
+        double duration = 0;
+        SampleTimeline syncTimeline = null;
+        for (SampleTimeline timeline : timelines) {
+            duration = Math.max(duration, timeline.getDuration());
+            if (syncTimeline == null && timeline.hasSyncSamples()) {
+                syncTimeline = timeline;
+            }
+        }
+
+        List<TimeRange> ranges = new ArrayList<>();
+        double start = 0;
+        if (syncTimeline != null) {
+            long[] syncSamples = syncTimeline.getSyncSamples();
+            int i = 0;
+            while (true) {
+                double target = start + targetDuration;
+                while (i < syncSamples.length && syncTimeline.getTime(syncSamples[i] - 1) < target) {
+                    i++;
+                }
+                if (i == syncSamples.length) {
+                    break;
+                }
+                double cut = syncTimeline.getTime(syncSamples[i] - 1);
+                if (i > 0) {
+                    double previous = syncTimeline.getTime(syncSamples[i - 1] - 1);
+                    if (previous > start && target - previous < cut - target) {
+                        cut = previous;
+                    }
+                }
+                ranges.add(new TimeRange(start, cut));
+                start = cut;
+            }
+        } else {
+            for (double cut = targetDuration; cut < duration; cut = start + targetDuration) {
+                ranges.add(new TimeRange(start, cut));
+                start = cut;
+            }
+        }
+        if (duration > start || ranges.isEmpty()) {
+            ranges.add(new TimeRange(start, duration));
+        }
+        return ranges;
+    }
+}
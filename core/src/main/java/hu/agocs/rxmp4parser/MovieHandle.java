@@ -0,0 +1,94 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import hu.agocs.rxmp4parser.annotation.Nullable;
+import hu.agocs.rxmp4parser.io.DataSource;
+import hu.agocs.rxmp4parser.io.FileChannelSource;
+import hu.agocs.rxmp4parser.io.MovieReader;
+
+/**
+ * A Movie together with the file or DataSource it reads its samples from. {@link #close()} closes
+ * every track and the source, after that the Movie and everything made from it, like clips or
+ * appended tracks, can not be written anymore. Nothing is opened until {@link #open()}, closing is
+ * allowed at any time and more than once.
+ */
+public class MovieHandle implements Closeable {
+
+    private final File file;
+
+    private DataSource source;
+    private Movie movie;
+    private boolean closed;
+
+    public MovieHandle(File file) {
+        this.file = file;
+    }
+
+    /**
+     * The Movie is read from the given source, which is closed together with the handle.
+     */
+    public MovieHandle(DataSource source) {
+        this.file = null;
+        this.source = source;
+    }
+
+    /**
+     * The file the Movie is read from, or null if it is read from a DataSource.
+     */
+    @Nullable
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized Movie open() throws IOException {
+        if (closed) {
+            throw new IOException("The movie has already been closed: " + getName());
+        }
+        if (movie == null) {
+            if (source == null) {
+                source = new FileChannelSource(file);
+            }
+            try {
+                movie = MovieReader.read(getName(), source);
+            } catch (IOException | RuntimeException e) {
+                source.close();
+                source = null;
+                // a given source can not be opened again
+                closed = file == null;
+                throw e;
+            }
+        }
+        return movie;
+    }
+
+    private String getName() {
+        return file != null ? file.getAbsolutePath() : String.valueOf(source);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (movie != null) {
+                for (Track track : movie.getTracks()) {
+                    track.close();
+                }
+            }
+        } finally {
+            movie = null;
+            if (source != null) {
+                source.close();
+                source = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package hu.agocs.rxmp4parser;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hu.agocs.rxmp4parser.annotation.NonNull;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Runs parse and write jobs with priorities and a separate limit on the number of jobs running at
+ * once for each kind. A job is an Observable, for example one returned by
+ * {@link RxMp4Parser#from(java.io.File)} or {@link RxMp4Parser#output}. It is subscribed when a slot
+ * is free, jobs with a higher priority first and jobs with the same priority in the order they were
+ * subscribed, and it keeps its slot until it terminates or is unsubscribed, even if it continues on
+ * another Scheduler. Unsubscribing a job which is still queued removes it from the queue. The
+ * threads of an idle pool stop after a minute and are started again before the next job is queued.
+ */
+public class Mp4JobScheduler {
+
+    public enum Priority {
+        LOW, NORMAL, HIGH
+    }
+
+    private final JobPool parsers;
+    private final JobPool writers;
+
+    public Mp4JobScheduler(int maxParsers, int maxWriters) {
+        this.parsers = new JobPool("mp4-parser", maxParsers);
+        this.writers = new JobPool("mp4-writer", maxWriters);
+    }
+
+    public <T> Observable<T> parse(@NonNull Observable<T> job, @NonNull Priority priority) {
+        return parsers.schedule(job, priority);
+    }
+
+    public <T> Observable<T> write(@NonNull Observable<T> job, @NonNull Priority priority) {
+        return writers.schedule(job, priority);
+    }
+
+    public <T> Observable.Transformer<T, T> parseJob(@NonNull final Priority priority) {
+        return new Observable.Transformer<T, T>() {
+            @Override
+            public Observable<T> call(Observable<T> job) {
+                return parse(job, priority);
+            }
+        };
+    }
+
+    public <T> Observable.Transformer<T, T> writeJob(@NonNull final Priority priority) {
+        return new Observable.Transformer<T, T>() {
+            @Override
+            public Observable<T> call(Observable<T> job) {
+                return write(job, priority);
+            }
+        };
+    }
+
+    public JobPool getParsers() {
+        return parsers;
+    }
+
+    public JobPool getWriters() {
+        return writers;
+    }
+
+    /**
+     * Stops accepting jobs, the queued and running ones are still finished.
+     */
+    public void shutdown() {
+        parsers.executor.shutdown();
+        writers.executor.shutdown();
+    }
+
+    public static class JobPool {
+
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong sequence = new AtomicLong();
+
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong finished = new AtomicLong();
+        private final AtomicLong cancelled = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        JobPool(final String name, int maxConcurrent) {
+            if (maxConcurrent <= 0) {
+                throw new IllegalArgumentException("The number of concurrent jobs has to be positive.");
+            }
+            // the queue orders the jobs, so they have to be passed to execute() and not to submit()
+            executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        <T> Observable<T> schedule(final Observable<T> source, final Priority priority) {
+            return Observable.create(new Observable.OnSubscribe<T>() {
+                @Override
+                public void call(Subscriber<? super T> subscriber) {
+                    final Job<T> job = new Job<>(JobPool.this, source, subscriber, priority, sequence.getAndIncrement());
+                    subscriber.add(Subscriptions.create(new Action0() {
+                        @Override
+                        public void call() {
+                            if (executor.remove(job)) {
+                                cancelled.incrementAndGet();
+                            }
+                        }
+                    }));
+                    try {
+                        // an idle pool lets its threads time out, and the executor would hand a job
+                        // straight to a new thread instead of queueing it behind higher priorities
+                        executor.prestartAllCoreThreads();
+                        executor.execute(job);
+                    } catch (RejectedExecutionException e) {
+                        subscriber.onError(e);
+                    }
+                }
+            });
+        }
+
+        public int getMaxConcurrent() {
+            return executor.getMaximumPoolSize();
+        }
+
+        public int getQueueDepth() {
+            return executor.getQueue().size();
+        }
+
+        public int getRunning() {
+            return running.get();
+        }
+
+        public long getStarted() {
+            return started.get();
+        }
+
+        public long getFinished() {
+            return finished.get();
+        }
+
+        public long getCancelled() {
+            return cancelled.get();
+        }
+
+        /**
+         * Returns the average time the started jobs spent in the queue.
+         */
+        public double getAverageWaitMillis() {
+            long count = started.get();
+            return count > 0 ? totalWaitNanos.get() / 1e6 / count : 0;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos.get() / 1e6;
+        }
+
+        void onStarted(long waitNanos) {
+            running.incrementAndGet();
+            started.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            long max;
+            while (waitNanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+                // retry
+            }
+        }
+
+        void onFinished() {
+            running.decrementAndGet();
+            finished.incrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return "JobPool{" + getRunning() + "/" + getMaxConcurrent() + " running, " + getQueueDepth() + " queued, "
+                    + getFinished() + " finished, " + getCancelled() + " cancelled, wait avg "
+                    + getAverageWaitMillis() + " ms, max " + getMaxWaitMillis() + " ms}";
+        }
+    }
+
+    private static class Job<T> implements Runnable, Comparable<Job<?>> {
+
+        private final JobPool pool;
+        private final Observable<T> source;
+        private final Subscriber<? super T> subscriber;
+        private final Priority priority;
+        private final long sequence;
+        private final long queuedAt = System.nanoTime();
+
+        Job(JobPool pool, Observable<T> source, Subscriber<? super T> subscriber, Priority priority, long sequence) {
+            this.pool = pool;
+            this.source = source;
+            this.subscriber = subscriber;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(@NonNull Job<?> other) {
+            if (priority != other.priority) {
+                return other.priority.compareTo(priority);
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            if (subscriber.isUnsubscribed()) {
+                pool.cancelled.incrementAndGet();
+                return;
+            }
+            pool.onStarted(System.nanoTime() - queuedAt);
+            final CountDownLatch done = new CountDownLatch(1);
+            Action0 release = new Action0() {
+                @Override
+                public void call() {
+                    done.countDown();
+                }
+            };
+            subscriber.add(Subscriptions.create(release));
+            try {
+                source.unsafeSubscribe(new Subscriber<T>(subscriber) {
+                    @Override
+                    public void onNext(T t) {
+                        subscriber.onNext(t);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        subscriber.onError(e);
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        subscriber.onCompleted();
+                        done.countDown();
+                    }
+                });
+                // the slot is held until the job terminates, even if it continues on another thread
+                done.await();
+            } catch (InterruptedException e) {
+                subscriber.unsubscribe();
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                subscriber.onError(e);
+            } finally {
+                pool.onFinished();
+            }
+        }
+    }
+}
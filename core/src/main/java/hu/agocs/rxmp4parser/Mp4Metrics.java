@@ -0,0 +1,53 @@
+package hu.agocs.rxmp4parser;
+
+/**
+ * Receives the time spent in the stages of parsing, cropping, appending and writing a Movie. Set
+ * it with {@link RxMp4Parser#setMetrics(Mp4Metrics)}. By default it is {@link #NONE}, and then
+ * the stages do not read the clock at all. {@link HistogramMetrics} collects the reports in
+ * memory.
+ * <p>
+ * Stages report on the thread that ran them, so implementations have to be thread safe.
+ */
+public interface Mp4Metrics {
+
+    /**
+     * Reading the headers of a source and creating its tracks.
+     */
+    String PARSE = "parse";
+    /**
+     * The pass over the sample durations and sync samples of a Movie before it can be cropped.
+     */
+    String INDEX = "index";
+    /**
+     * Cutting the tracks of a Movie between two times.
+     */
+    String CROP = "crop";
+    /**
+     * Appending tracks into one.
+     */
+    String APPEND = "append";
+    /**
+     * Putting tracks into a Movie.
+     */
+    String MUX = "mux";
+    /**
+     * Building the boxes of a Movie before it is written.
+     */
+    String BUILD = "build";
+    /**
+     * Writing the boxes and the sample data.
+     */
+    String WRITE = "write";
+
+    Mp4Metrics NONE = new Mp4Metrics() {
+        @Override
+        public void onStage(String stage, long durationNanos, long sampleCount, long byteCount) {
+        }
+    };
+
+    /**
+     * @param sampleCount the number of samples in the result of the stage, or -1 if not known
+     * @param byteCount   the number of bytes read or written by the stage, or -1 if not known
+     */
+    void onStage(String stage, long durationNanos, long sampleCount, long byteCount);
+}
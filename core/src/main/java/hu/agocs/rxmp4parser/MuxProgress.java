@@ -0,0 +1,78 @@
+package hu.agocs.rxmp4parser;
+
+import java.io.File;
+
+public class MuxProgress {
+
+    private final long bytesWritten;
+    private final long totalBytes;
+    private final long[] samplesWritten;
+    private final long elapsedMillis;
+    private final double currentBytesPerSecond;
+    private final File outputFile;
+
+    public MuxProgress(long bytesWritten, long totalBytes, long[] samplesWritten, long elapsedMillis,
+                       double currentBytesPerSecond, File outputFile) {
+        this.bytesWritten = bytesWritten;
+        this.totalBytes = totalBytes;
+        this.samplesWritten = samplesWritten;
+        this.elapsedMillis = elapsedMillis;
+        this.currentBytesPerSecond = currentBytesPerSecond;
+        this.outputFile = outputFile;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public double getFraction() {
+        return totalBytes > 0 ? (double) bytesWritten / (double) totalBytes : 0;
+    }
+
+    /**
+     * Returns the number of samples written per track, in the order of the tracks of the Movie.
+     */
+    public long[] getSamplesWritten() {
+        return samplesWritten;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns the write speed since the previous event.
+     */
+    public double getCurrentBytesPerSecond() {
+        return currentBytesPerSecond;
+    }
+
+    public double getCurrentMegabytesPerSecond() {
+        return currentBytesPerSecond / (1024 * 1024);
+    }
+
+    public double getAverageBytesPerSecond() {
+        return elapsedMillis > 0 ? bytesWritten * 1000.0 / elapsedMillis : 0;
+    }
+
+    /**
+     * Returns the output file in the last event, and null in every event before it.
+     */
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    public boolean isDone() {
+        return outputFile != null;
+    }
+
+    @Override
+    public String toString() {
+        return "MuxProgress{" + bytesWritten + "/" + totalBytes + " bytes, " + elapsedMillis + " ms, "
+                + getCurrentMegabytesPerSecond() + " MB/s" + (outputFile != null ? ", " + outputFile : "") + "}";
+    }
+}
@@ -0,0 +1,110 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.Box;
+import org.mp4parser.Container;
+import org.mp4parser.boxes.iso14496.part12.MovieBox;
+import org.mp4parser.boxes.iso14496.part12.SampleSizeBox;
+import org.mp4parser.boxes.iso14496.part12.SampleTableBox;
+import org.mp4parser.boxes.iso14496.part12.TrackBox;
+
+import java.io.File;
+import java.util.List;
+
+import hu.agocs.rxmp4parser.io.WriteListener;
+import rx.Subscriber;
+
+/**
+ * Turns the byte count of a running write into {@link MuxProgress} events, at most one per
+ * interval. The samples written per track are looked up in the end offsets of the samples in the
+ * output, taken from the chunk offset and sample size tables of the built container, so nothing is
+ * allocated per sample while writing. The byte count is the one which has reached the output
+ * file, so buffered data is not reported as written before it is flushed.
+ */
+public class MuxProgressTracker implements WriteListener {
+
+    private final Subscriber<? super MuxProgress> subscriber;
+    private final long intervalNanos;
+    private final long totalBytes;
+    // sampleEnds[track][sample] is the output offset right after the sample
+    private final long[][] sampleEnds;
+    private final long startNanos;
+
+    private long lastNanos;
+    private long lastBytes;
+
+    public MuxProgressTracker(Container container, long intervalMillis, Subscriber<? super MuxProgress> subscriber) {
+        this.subscriber = subscriber;
+        this.intervalNanos = intervalMillis * 1000000L;
+
+        long size = 0;
+        for (Box box : container.getBoxes()) {
+            size += box.getSize();
+        }
+        this.totalBytes = size;
+
+        List<MovieBox> moov = container.getBoxes(MovieBox.class);
+        List<TrackBox> trackBoxes = moov.get(0).getBoxes(TrackBox.class);
+        this.sampleEnds = new long[trackBoxes.size()][];
+        for (int i = 0; i < trackBoxes.size(); i++) {
+            sampleEnds[i] = sampleEnds(trackBoxes.get(i).getSampleTableBox());
+        }
+
+        this.startNanos = System.nanoTime();
+        this.lastNanos = startNanos;
+    }
+
+    private static long[] sampleEnds(SampleTableBox stbl) {
+        long[] chunkOffsets = stbl.getChunkOffsetBox().getChunkOffsets();
+        long[] samplesPerChunk = stbl.getSampleToChunkBox().blowup(chunkOffsets.length);
+        SampleSizeBox stsz = stbl.getSampleSizeBox();
+        long[] ends = new long[(int) stsz.getSampleCount()];
+        int sample = 0;
+        for (int chunk = 0; chunk < chunkOffsets.length && sample < ends.length; chunk++) {
+            long offset = chunkOffsets[chunk];
+            for (long i = 0; i < samplesPerChunk[chunk] && sample < ends.length; i++) {
+                offset += stsz.getSampleSizeAtIndex(sample);
+                ends[sample++] = offset;
+            }
+        }
+        return ends;
+    }
+
+    @Override
+    public void onBytesWritten(long bytesWritten) {
+        long now = System.nanoTime();
+        if (now - lastNanos >= intervalNanos && !subscriber.isUnsubscribed()) {
+            subscriber.onNext(progress(bytesWritten, now, null));
+        }
+    }
+
+    public MuxProgress done(File outputFile) {
+        return progress(totalBytes, System.nanoTime(), outputFile);
+    }
+
+    private MuxProgress progress(long bytesWritten, long now, File outputFile) {
+        long[] samplesWritten = new long[sampleEnds.length];
+        for (int i = 0; i < sampleEnds.length; i++) {
+            samplesWritten[i] = countUpTo(sampleEnds[i], bytesWritten);
+        }
+        double seconds = (now - lastNanos) / 1e9;
+        double currentBytesPerSecond = seconds > 0 ? (bytesWritten - lastBytes) / seconds : 0;
+        lastNanos = now;
+        lastBytes = bytesWritten;
+        return new MuxProgress(bytesWritten, totalBytes, samplesWritten, (now - startNanos) / 1000000L,
+                currentBytesPerSecond, outputFile);
+    }
+
+    private static int countUpTo(long[] ends, long bytesWritten) {
+        int low = 0;
+        int high = ends.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= bytesWritten) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,1002 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.Container;
+import org.mp4parser.boxes.iso14496.part12.MovieBox;
+import org.mp4parser.boxes.iso14496.part12.MovieExtendsBox;
+import org.mp4parser.boxes.iso14496.part12.TrackBox;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.muxer.TrackMetaData;
+import org.mp4parser.muxer.tracks.h264.parsing.model.BitstreamElement;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import hu.agocs.rxmp4parser.annotation.NonNull;
+import hu.agocs.rxmp4parser.annotation.Nullable;
+import hu.agocs.rxmp4parser.filters.AudioTrackFilter;
+import hu.agocs.rxmp4parser.filters.NullFilter;
+import hu.agocs.rxmp4parser.filters.TrackFilter;
+import hu.agocs.rxmp4parser.filters.VideoTrackFilter;
+import hu.agocs.rxmp4parser.io.BlockCacheDataSource;
+import hu.agocs.rxmp4parser.io.DataSource;
+import hu.agocs.rxmp4parser.io.DemuxWriter;
+import hu.agocs.rxmp4parser.io.FileChannelSource;
+import hu.agocs.rxmp4parser.io.FragmentedOutput;
+import hu.agocs.rxmp4parser.io.MovieReader;
+import hu.agocs.rxmp4parser.io.MovieWriter;
+import hu.agocs.rxmp4parser.operators.AppendTracks;
+import hu.agocs.rxmp4parser.operators.CropMovie;
+import hu.agocs.rxmp4parser.operators.MuxTracks;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.functions.FuncN;
+import rx.schedulers.Schedulers;
+
+public class RxMp4Parser {
+
+    private static final String TAG = "RxMp4Parser";
+
+    private static final long MAX_MOOV_SIZE = 64 * 1024 * 1024;
+
+    private static volatile Logger logger = Logger.SYSTEM_ERR;
+
+    private static volatile Mp4Metrics metrics = Mp4Metrics.NONE;
+
+    public static void setLogger(@NonNull Logger logger) {
+        RxMp4Parser.logger = logger;
+    }
+
+    @NonNull
+    public static Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Sets the listener the parsing, cropping, appending and writing stages report their time to.
+     * Mp4Metrics.NONE turns the reports off.
+     */
+    public static void setMetrics(@NonNull Mp4Metrics metrics) {
+        RxMp4Parser.metrics = metrics;
+    }
+
+    @NonNull
+    public static Mp4Metrics getMetrics() {
+        return metrics;
+    }
+
+    public static Observable<Movie> from(@NonNull final String inputPath) {
+        return Observable.defer(new Func0<Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call() {
+                if (new File(inputPath).exists()) {
+                    try {
+                        return Observable.just(parse(new File(inputPath)));
+                    } catch (IOException e) {
+                        logger.error(TAG, e.getMessage());
+                        return Observable.error(e);
+                    }
+                } else {
+                    return Observable.error(new FileNotFoundException(inputPath));
+                }
+            }
+        });
+    }
+
+    public static Observable<Movie> from(@NonNull final File inputFile) {
+        return from(inputFile.getAbsolutePath());
+    }
+
+    /**
+     * Parses the file, passes the Movie to the given function and closes the tracks and the file
+     * when the returned Observable terminates or is unsubscribed. The Movie, and everything made
+     * from it, can only be used until then.
+     */
+    public static <R> Observable<R> withMovie(@NonNull final File inputFile,
+                                              @NonNull final Func1<Movie, ? extends Observable<? extends R>> function) {
+        return withMovie(new Func0<MovieHandle>() {
+            @Override
+            public MovieHandle call() {
+                return new MovieHandle(inputFile);
+            }
+        }, function);
+    }
+
+    public static <R> Observable<R> withMovie(@NonNull String inputPath,
+                                              @NonNull Func1<Movie, ? extends Observable<? extends R>> function) {
+        return withMovie(new File(inputPath), function);
+    }
+
+    /**
+     * Takes the Movie from the cache, passes it to the given function and releases it to the cache
+     * when the returned Observable terminates or is unsubscribed. The file is closed once the entry
+     * has also been evicted, invalidated or cleared.
+     */
+    public static <R> Observable<R> withMovie(@NonNull final File inputFile, @NonNull final MovieCache cache,
+                                              @NonNull final Func1<Movie, ? extends Observable<? extends R>> function) {
+        return Observable.defer(new Func0<Observable<R>>() {
+            @Override
+            public Observable<R> call() {
+                if (!inputFile.exists()) {
+                    return Observable.error(new FileNotFoundException(inputFile.getAbsolutePath()));
+                }
+                final Movie movie;
+                try {
+                    movie = cache.get(inputFile);
+                } catch (IOException e) {
+                    logger.error(TAG, e.getMessage());
+                    return Observable.error(e);
+                }
+                return Observable.using(new Func0<Movie>() {
+                    @Override
+                    public Movie call() {
+                        return movie;
+                    }
+                }, function, new Action1<Movie>() {
+                    @Override
+                    public void call(Movie movie) {
+                        cache.release(movie);
+                    }
+                }, true);
+            }
+        });
+    }
+
+    public static <R> Observable<R> withMovie(@NonNull String inputPath, @NonNull MovieCache cache,
+                                              @NonNull Func1<Movie, ? extends Observable<? extends R>> function) {
+        return withMovie(new File(inputPath), cache, function);
+    }
+
+    /**
+     * Reads the Movie from any random access source. The samples are read from the source when
+     * the Movie is written, so it must not be closed before that.
+     */
+    public static Observable<Movie> from(@NonNull final DataSource source) {
+        return Observable.defer(new Func0<Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call() {
+                try {
+                    return Observable.just(MovieReader.read(source.toString(), source));
+                } catch (IOException e) {
+                    logger.error(TAG, e.getMessage());
+                    return Observable.error(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the Movie through a {@link BlockCacheDataSource#of(URL)}. Create the source with it and
+     * use {@link #from(DataSource)} instead to read the hit rate counters of the cache.
+     */
+    public static Observable<Movie> from(@NonNull URL url) {
+        return from(BlockCacheDataSource.of(url));
+    }
+
+    /**
+     * Reads the Movie from the source, passes it to the given function and closes the tracks and
+     * the source when the returned Observable terminates or is unsubscribed. As the source can not
+     * be opened again, the Observable can only be subscribed once.
+     */
+    public static <R> Observable<R> withMovie(@NonNull final DataSource source,
+                                              @NonNull Func1<Movie, ? extends Observable<? extends R>> function) {
+        return withMovie(new Func0<MovieHandle>() {
+            @Override
+            public MovieHandle call() {
+                return new MovieHandle(source);
+            }
+        }, function);
+    }
+
+    /**
+     * Same as {@link #withMovie(DataSource, Func1)}, reading the URL the way {@link #from(URL)}
+     * does. Every subscription gets its own block cache, pass a {@link BlockCacheDataSource#of(URL)}
+     * to withMovie(DataSource, Func1) instead to read its counters.
+     */
+    public static <R> Observable<R> withMovie(@NonNull final URL url,
+                                              @NonNull Func1<Movie, ? extends Observable<? extends R>> function) {
+        return withMovie(new Func0<MovieHandle>() {
+            @Override
+            public MovieHandle call() {
+                return new MovieHandle(BlockCacheDataSource.of(url));
+            }
+        }, function);
+    }
+
+    private static <R> Observable<R> withMovie(Func0<MovieHandle> handles,
+                                               final Func1<Movie, ? extends Observable<? extends R>> function) {
+        return Observable.using(handles, new Func1<MovieHandle, Observable<? extends R>>() {
+            @Override
+            public Observable<? extends R> call(MovieHandle handle) {
+                Movie movie;
+                try {
+                    movie = handle.open();
+                } catch (IOException e) {
+                    logger.error(TAG, e.getMessage());
+                    return Observable.error(e);
+                }
+                return function.call(movie);
+            }
+        }, new Action1<MovieHandle>() {
+            @Override
+            public void call(MovieHandle handle) {
+                try {
+                    handle.close();
+                } catch (IOException e) {
+                    logger.error(TAG, e.getMessage());
+                }
+            }
+        }, true);
+    }
+
+    static Movie parse(File inputFile) throws IOException {
+        // samples are read through positional reads, so the movie can be written from several threads,
+        // and the handle closes the file if it can not be parsed
+        return new MovieHandle(inputFile).open();
+    }
+
+    // the inputs of a job, opened while it runs and closed when it terminates
+    private static final Func0<List<MovieHandle>> HANDLES = new Func0<List<MovieHandle>>() {
+        @Override
+        public List<MovieHandle> call() {
+            return Collections.synchronizedList(new ArrayList<MovieHandle>());
+        }
+    };
+
+    private static final Action1<List<MovieHandle>> CLOSE_HANDLES = new Action1<List<MovieHandle>>() {
+        @Override
+        public void call(List<MovieHandle> handles) {
+            synchronized (handles) {
+                for (MovieHandle handle : handles) {
+                    try {
+                        handle.close();
+                    } catch (IOException e) {
+                        logger.error(TAG, e.getMessage());
+                    }
+                }
+            }
+        }
+    };
+
+    private static Observable<Movie> open(final File inputFile, final List<MovieHandle> handles) {
+        return Observable.defer(new Func0<Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call() {
+                MovieHandle handle = new MovieHandle(inputFile);
+                handles.add(handle);
+                try {
+                    return Observable.just(handle.open());
+                } catch (IOException e) {
+                    logger.error(TAG, e.getMessage());
+                    return Observable.error(e);
+                }
+            }
+        });
+    }
+
+    @Nullable
+    public static Observable<Track> extractTrackWithHandler(@NonNull final Movie movie, @NonNull final String handler) {
+        return Observable.from(movie.getTracks())
+                .filter(new TrackFilter(handler))
+                .firstOrDefault(null);
+    }
+
+    @Nullable
+    public static Observable<Track> extractAudioTrack(@NonNull final Movie movie) {
+        return Observable.from(movie.getTracks())
+                .filter(new AudioTrackFilter())
+                .firstOrDefault(null);
+    }
+
+    @Nullable
+    public static Observable<Track> extractVideoTrack(final Movie movie) {
+        return Observable.from(movie.getTracks())
+                .filter(new VideoTrackFilter())
+                .firstOrDefault(null);
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is only read
+    public static Observable<Movie> concatenate(@NonNull Observable<Movie>... input) {
+        return Observable.from(input)
+                .toList()
+                .flatMap(new Func1<List<Observable<Movie>>, Observable<Movie>>() {
+                    @Override
+                    public Observable<Movie> call(List<Observable<Movie>> observables) {
+                        return concatenate(observables);
+                    }
+                });
+    }
+
+    public static Observable<Movie> concatenate(@NonNull Iterable<? extends Observable<Movie>> input) {
+        return Observable.zip(input, new FuncN<Iterable<Movie>>() {
+            @Override
+            public Iterable<Movie> call(Object... args) {
+                List<Movie> movies = new ArrayList<>();
+                for (Object movie : args) {
+                    movies.add((Movie) movie);
+                }
+                return movies;
+            }
+        }).flatMap(new Func1<Iterable<Movie>, Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call(Iterable<Movie> movies) {
+                return concatenateMovies(movies, Schedulers.immediate());
+            }
+        });
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is only read
+    public static Observable<Movie> concatenate(@NonNull Scheduler scheduler, int maxConcurrency, @NonNull Observable<Movie>... input) {
+        return concatenate(Arrays.asList(input), scheduler, maxConcurrency);
+    }
+
+    public static Observable<Movie> concatenate(@NonNull Iterable<? extends Observable<Movie>> input,
+                                                @NonNull final Scheduler scheduler, int maxConcurrency) {
+        // at most maxConcurrency inputs are parsed at once, but they are still emitted in input order
+        return Observable.from(input)
+                .concatMapEager(new Func1<Observable<Movie>, Observable<Movie>>() {
+                    @Override
+                    public Observable<Movie> call(Observable<Movie> movie) {
+                        return movie.subscribeOn(scheduler);
+                    }
+                }, maxConcurrency, maxConcurrency)
+                .toList()
+                .flatMap(new Func1<List<Movie>, Observable<Movie>>() {
+                    @Override
+                    public Observable<Movie> call(List<Movie> movies) {
+                        return concatenateMovies(movies, scheduler);
+                    }
+                });
+    }
+
+    // the tracks are grouped by handler and by their index among the tracks with the same handler,
+    // every group is appended on the scheduler and the results are muxed in the order of the groups
+    private static Observable<Movie> concatenateMovies(final Iterable<Movie> movies, final Scheduler scheduler) {
+        return Observable.defer(new Func0<Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call() {
+                Map<String, List<Track>> groups = new LinkedHashMap<>();
+                int movieCount = 0;
+                for (Movie movie : movies) {
+                    Utils.groupByHandler(groups, movie.getTracks());
+                    movieCount++;
+                }
+                // a group missing from an input would be muxed out of sync with the other groups,
+                // so only the tracks every input has are kept, like a timecode track of one input
+                Iterator<Map.Entry<String, List<Track>>> iterator = groups.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, List<Track>> group = iterator.next();
+                    if (group.getValue().size() != movieCount) {
+                        String key = group.getKey();
+                        logger.error(TAG, missingTrackMessage(movies, key) + ", the " + key + " tracks are left out.");
+                        iterator.remove();
+                    }
+                }
+                if (groups.isEmpty()) {
+                    IOException e = new IOException("The inputs have no track in common.");
+                    logger.error(TAG, e.getMessage());
+                    return Observable.error(e);
+                }
+                return Observable.from(groups.values())
+                        .concatMapEager(new Func1<List<Track>, Observable<Track>>() {
+                            @Override
+                            public Observable<Track> call(List<Track> group) {
+                                return Observable.just(group)
+                                        .lift(new AppendTracks())
+                                        .subscribeOn(scheduler);
+                            }
+                        })
+                        .toList()
+                        .lift(new MuxTracks());
+            }
+        });
+    }
+
+    private static String missingTrackMessage(Iterable<Movie> movies, String key) {
+        int index = 0;
+        for (Movie movie : movies) {
+            Map<String, List<Track>> groups = new LinkedHashMap<>();
+            Utils.groupByHandler(groups, movie.getTracks());
+            if (!groups.containsKey(key)) {
+                return "Input " + index + " has no " + key + " track";
+            }
+            index++;
+        }
+        return "Not every input has a " + key + " track";
+    }
+
+    @SafeVarargs
+    public static Observable<File> concatenateInto(@NonNull final File outputFile, @NonNull Observable<Movie>... input) {
+        return concatenate(input).flatMap(new Func1<Movie, Observable<File>>() {
+            @Override
+            public Observable<File> call(Movie movie) {
+                return output(movie, outputFile);
+            }
+        });
+    }
+
+    public static Observable<File> concatenateInto(@NonNull Iterable<? extends Observable<Movie>> input, @NonNull final File outputFile) {
+        return concatenate(input).flatMap(new Func1<Movie, Observable<File>>() {
+            @Override
+            public Observable<File> call(Movie movie) {
+                return output(movie, outputFile);
+            }
+        });
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is only read
+    public static Observable<File> concatenateInto(@NonNull final File outputFile, @NonNull Scheduler scheduler, int maxConcurrency,
+                                                   @NonNull Observable<Movie>... input) {
+        return concatenateInto(Arrays.asList(input), outputFile, scheduler, maxConcurrency);
+    }
+
+    public static Observable<File> concatenateInto(@NonNull Iterable<? extends Observable<Movie>> input, @NonNull final File outputFile,
+                                                   @NonNull Scheduler scheduler, int maxConcurrency) {
+        return concatenate(input, scheduler, maxConcurrency).flatMap(new Func1<Movie, Observable<File>>() {
+            @Override
+            public Observable<File> call(Movie movie) {
+                return output(movie, outputFile);
+            }
+        });
+    }
+
+    /**
+     * Reads only the moov box of the inputs, at most maxConcurrency of them at once on the given
+     * Scheduler, and checks that they can be concatenated in the given order. The inputs are
+     * emitted in order as they pass the check. The first one which does not fit the inputs before it
+     * fails the check with an IncompatibleInputException, without waiting for the rest.
+     */
+    public static Observable<File> checkConcatenation(@NonNull final Iterable<File> inputFiles,
+                                                      @NonNull final Scheduler scheduler, final int maxConcurrency) {
+        return Observable.defer(new Func0<Observable<File>>() {
+            @Override
+            public Observable<File> call() {
+                final ConcatenationCheck check = new ConcatenationCheck();
+                return Observable.from(inputFiles)
+                        .concatMapEager(new Func1<File, Observable<ConcatenationCheck.Input>>() {
+                            @Override
+                            public Observable<ConcatenationCheck.Input> call(final File inputFile) {
+                                return Observable.defer(new Func0<Observable<ConcatenationCheck.Input>>() {
+                                    @Override
+                                    public Observable<ConcatenationCheck.Input> call() {
+                                        if (!inputFile.exists()) {
+                                            return Observable.error(new FileNotFoundException(inputFile.getAbsolutePath()));
+                                        }
+                                        try {
+                                            return Observable.just(new ConcatenationCheck.Input(inputFile, readMovieBox(inputFile)));
+                                        } catch (IOException e) {
+                                            logger.error(TAG, e.getMessage());
+                                            return Observable.error(e);
+                                        }
+                                    }
+                                }).subscribeOn(scheduler);
+                            }
+                        }, maxConcurrency, maxConcurrency)
+                        .map(new Func1<ConcatenationCheck.Input, File>() {
+                            @Override
+                            public File call(ConcatenationCheck.Input input) {
+                                try {
+                                    check.add(input);
+                                } catch (IncompatibleInputException e) {
+                                    logger.error(TAG, e.getMessage());
+                                    throw Exceptions.propagate(e);
+                                }
+                                return input.getFile();
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * Checks the inputs with {@link #checkConcatenation(Iterable, Scheduler, int)} first, and parses
+     * and concatenates them only if all of them fit.
+     */
+    public static Observable<Movie> concatenateFiles(@NonNull final Iterable<File> inputFiles,
+                                                     @NonNull final Scheduler scheduler, final int maxConcurrency) {
+        return concatenateFiles(inputFiles, scheduler, maxConcurrency, new Func1<File, Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call(File inputFile) {
+                return from(inputFile);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #concatenateFiles(Iterable, Scheduler, int)}, but every input is closed once
+     * the output has been written, or the write failed or was unsubscribed.
+     */
+    public static Observable<File> concatenateFilesInto(@NonNull final Iterable<File> inputFiles, @NonNull final File outputFile,
+                                                        @NonNull final Scheduler scheduler, final int maxConcurrency) {
+        return Observable.using(HANDLES, new Func1<List<MovieHandle>, Observable<File>>() {
+            @Override
+            public Observable<File> call(final List<MovieHandle> handles) {
+                return concatenateFiles(inputFiles, scheduler, maxConcurrency, new Func1<File, Observable<Movie>>() {
+                    @Override
+                    public Observable<Movie> call(File inputFile) {
+                        return open(inputFile, handles);
+                    }
+                }).flatMap(new Func1<Movie, Observable<File>>() {
+                    @Override
+                    public Observable<File> call(Movie movie) {
+                        return output(movie, outputFile);
+                    }
+                });
+            }
+        }, CLOSE_HANDLES, true);
+    }
+
+    private static Observable<Movie> concatenateFiles(Iterable<File> inputFiles, final Scheduler scheduler,
+                                                      final int maxConcurrency, final Func1<File, Observable<Movie>> open) {
+        return checkConcatenation(inputFiles, scheduler, maxConcurrency)
+                .map(open)
+                .toList()
+                .flatMap(new Func1<List<Observable<Movie>>, Observable<Movie>>() {
+                    @Override
+                    public Observable<Movie> call(List<Observable<Movie>> movies) {
+                        return concatenate(movies, scheduler, maxConcurrency);
+                    }
+                });
+    }
+
+    public static Observable<Movie> render(@NonNull final List<EditSegment> segments) {
+        return Observable.defer(new Func0<Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call() {
+                try {
+                    return Observable.just(EditListRenderer.render(segments));
+                } catch (IOException | RuntimeException e) {
+                    return Observable.error(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Renders the segments into the file, and closes every source once the output has been
+     * written, or the write failed or was unsubscribed.
+     */
+    public static Observable<File> render(@NonNull final List<EditSegment> segments, @NonNull final File outputFile) {
+        return Observable.using(HANDLES, new Func1<List<MovieHandle>, Observable<File>>() {
+            @Override
+            public Observable<File> call(List<MovieHandle> handles) {
+                Movie movie;
+                try {
+                    movie = EditListRenderer.render(segments, handles);
+                } catch (IOException | RuntimeException e) {
+                    return Observable.error(e);
+                }
+                return output(movie, outputFile);
+            }
+        }, CLOSE_HANDLES, true);
+    }
+
+    public static Observable<MuxProgress> concatenateIntoWithProgress(@NonNull Iterable<? extends Observable<Movie>> input,
+                                                                      @NonNull final File outputFile, final long intervalMillis) {
+        return concatenate(input).flatMap(new Func1<Movie, Observable<MuxProgress>>() {
+            @Override
+            public Observable<MuxProgress> call(Movie movie) {
+                return outputWithProgress(movie, outputFile, intervalMillis);
+            }
+        });
+    }
+
+    public static Observable<Movie> crop(@NonNull String filePath, double fromTime, double toTime) {
+        return from(filePath).lift(new CropMovie(fromTime, toTime));
+    }
+
+    public static Observable<Movie> crop(@NonNull final File inputFile, final double fromTime, final double toTime) {
+        return crop(inputFile.getAbsolutePath(), fromTime, toTime);
+    }
+
+    public static Observable<Movie> crop(@NonNull final File inputFile, @NonNull final List<TimeRange> ranges) {
+        return from(inputFile).flatMap(new Func1<Movie, Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call(Movie movie) {
+                final MovieClipper clipper = new MovieClipper(movie);
+                return Observable.from(ranges).concatMap(new Func1<TimeRange, Observable<Movie>>() {
+                    @Override
+                    public Observable<Movie> call(TimeRange range) {
+                        return clip(clipper, range);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Loads the sidecar keyframe index of the file, or builds and writes it if it is missing or no
+     * longer valid.
+     */
+    public static Observable<KeyframeIndex> keyframeIndex(@NonNull File inputFile) {
+        return keyframeIndex(inputFile, KeyframeIndex.sidecarFile(inputFile));
+    }
+
+    /**
+     * Same as {@link #keyframeIndex(File)} with the sidecar at the given place. A null sidecar
+     * builds the index without reading or writing any sidecar.
+     */
+    public static Observable<KeyframeIndex> keyframeIndex(@NonNull final File inputFile, @Nullable final File sidecar) {
+        return Observable.defer(new Func0<Observable<KeyframeIndex>>() {
+            @Override
+            public Observable<KeyframeIndex> call() {
+                try {
+                    return Observable.just(KeyframeIndex.of(inputFile, sidecar));
+                } catch (IOException e) {
+                    logger.error(TAG, e.getMessage());
+                    return Observable.error(e);
+                }
+            }
+        });
+    }
+
+    public static Observable<Movie> crop(@NonNull File inputFile, double fromTime, double toTime, @NonNull KeyframeIndex index) {
+        return crop(inputFile, Collections.singletonList(new TimeRange(fromTime, toTime)), index);
+    }
+
+    public static Observable<Movie> crop(@NonNull final File inputFile, @NonNull final List<TimeRange> ranges,
+                                        @NonNull final KeyframeIndex index) {
+        return from(inputFile).flatMap(new Func1<Movie, Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call(Movie movie) {
+                final MovieClipper clipper = index.clipper(movie);
+                return Observable.from(ranges).concatMap(new Func1<TimeRange, Observable<Movie>>() {
+                    @Override
+                    public Observable<Movie> call(TimeRange range) {
+                        return clip(clipper, range);
+                    }
+                });
+            }
+        });
+    }
+
+    public static Observable<File> cropInto(@NonNull final File inputFile, @NonNull final List<TimeRange> ranges,
+                                            @NonNull final Func1<TimeRange, File> outputFiles) {
+        return withMovie(inputFile, new Func1<Movie, Observable<File>>() {
+            @Override
+            public Observable<File> call(Movie movie) {
+                final MovieClipper clipper = new MovieClipper(movie);
+                return Observable.from(ranges).concatMap(new Func1<TimeRange, Observable<File>>() {
+                    @Override
+                    public Observable<File> call(TimeRange range) {
+                        return clipInto(clipper, range, outputFiles.call(range));
+                    }
+                });
+            }
+        });
+    }
+
+    public static Observable<File> cropInto(@NonNull final File inputFile, @NonNull final List<TimeRange> ranges,
+                                            @NonNull final Func1<TimeRange, File> outputFiles,
+                                            @NonNull final Scheduler scheduler) {
+        return withMovie(inputFile, new Func1<Movie, Observable<File>>() {
+            @Override
+            public Observable<File> call(Movie movie) {
+                final MovieClipper clipper = new MovieClipper(movie);
+                return Observable.from(ranges).flatMap(new Func1<TimeRange, Observable<File>>() {
+                    @Override
+                    public Observable<File> call(TimeRange range) {
+                        return clipInto(clipper, range, outputFiles.call(range)).subscribeOn(scheduler);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Writes every track of the input into its own file, in the order of the tracks. The source
+     * is read once from start to end, all outputs are written at the same time.
+     */
+    public static Observable<File> demux(@NonNull final File inputFile, @NonNull final Func1<Track, File> outputFiles) {
+        return Observable.create(new Observable.OnSubscribe<File>() {
+            @Override
+            public void call(Subscriber<? super File> subscriber) {
+                List<File> files = new ArrayList<>();
+                try {
+                    FileChannelSource source = new FileChannelSource(inputFile);
+                    try {
+                        Movie movie = MovieReader.read(inputFile, source);
+                        for (Track track : movie.getTracks()) {
+                            files.add(outputFiles.call(track));
+                        }
+                        DemuxWriter.write(movie, files, subscriber);
+                    } finally {
+                        source.close();
+                    }
+                } catch (IOException e) {
+                    if (!subscriber.isUnsubscribed()) {
+                        logger.error(TAG, e.getMessage());
+                        subscriber.onError(e);
+                    }
+                    return;
+                }
+                for (File file : files) {
+                    if (subscriber.isUnsubscribed()) {
+                        return;
+                    }
+                    subscriber.onNext(file);
+                }
+                if (!subscriber.isUnsubscribed()) {
+                    subscriber.onCompleted();
+                }
+            }
+        });
+    }
+
+    public static Observable<File> segment(@NonNull final File inputFile, double targetDuration) {
+        String name = inputFile.getName();
+        int extension = name.lastIndexOf('.');
+        final String baseName = extension > 0 ? name.substring(0, extension) : name;
+        final File directory = inputFile.getAbsoluteFile().getParentFile();
+        return segment(inputFile, targetDuration, new Func1<Integer, File>() {
+            @Override
+            public File call(Integer index) {
+                return new File(directory, String.format(Locale.US, "%s_%03d.mp4", baseName, index));
+            }
+        });
+    }
+
+    public static Observable<File> segment(@NonNull final File inputFile, final double targetDuration,
+                                           @NonNull final Func1<Integer, File> outputFiles) {
+        return segment(inputFile, targetDuration, outputFiles, null);
+    }
+
+    public static Observable<File> segment(@NonNull final File inputFile, final double targetDuration,
+                                           @NonNull final Func1<Integer, File> outputFiles,
+                                           @Nullable final Scheduler scheduler) {
+        return withMovie(inputFile, new Func1<Movie, Observable<File>>() {
+            @Override
+            public Observable<File> call(Movie movie) {
+                final MovieClipper clipper = new MovieClipper(movie);
+                final List<TimeRange> ranges;
+                try {
+                    ranges = clipper.segments(targetDuration);
+                } catch (RuntimeException e) {
+                    return Observable.error(e);
+                }
+                Observable<Integer> indices = Observable.range(0, ranges.size());
+                Func1<Integer, Observable<File>> writeSegment = new Func1<Integer, Observable<File>>() {
+                    @Override
+                    public Observable<File> call(Integer index) {
+                        TimeRange range = ranges.get(index);
+                        Observable<File> segment = output(clipper.cut(range.getFrom(), range.getTo()), outputFiles.call(index));
+                        return scheduler != null ? segment.subscribeOn(scheduler) : segment;
+                    }
+                };
+                return scheduler != null ? indices.flatMap(writeSegment) : indices.concatMap(writeSegment);
+            }
+        });
+    }
+
+    private static Observable<Movie> clip(final MovieClipper clipper, final TimeRange range) {
+        return Observable.defer(new Func0<Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call() {
+                try {
+                    return Observable.just(clipper.clip(range));
+                } catch (RuntimeException e) {
+                    return Observable.error(e);
+                }
+            }
+        });
+    }
+
+    private static Observable<File> clipInto(MovieClipper clipper, TimeRange range, final File outputFile) {
+        return clip(clipper, range).flatMap(new Func1<Movie, Observable<File>>() {
+            @Override
+            public Observable<File> call(Movie movie) {
+                return output(movie, outputFile);
+            }
+        });
+    }
+
+    public static Observable<File> output(final Movie movie, final File outputFile) {
+        return Observable.create(new Observable.OnSubscribe<File>() {
+            @Override
+            public void call(Subscriber<? super File> subscriber) {
+                try {
+                    // stops between writes once unsubscribed, a partial output is never left behind
+                    MovieWriter.write(movie, outputFile, subscriber);
+                } catch (IOException e) {
+                    if (!subscriber.isUnsubscribed()) {
+                        logger.error(TAG, e.getMessage());
+                        subscriber.onError(e);
+                    }
+                    return;
+                }
+                if (!subscriber.isUnsubscribed()) {
+                    subscriber.onNext(outputFile);
+                    subscriber.onCompleted();
+                }
+            }
+        });
+    }
+
+    public static Observable<MuxProgress> outputWithProgress(final Movie movie, final File outputFile, final long intervalMillis) {
+        return Observable.create(new Observable.OnSubscribe<MuxProgress>() {
+            @Override
+            public void call(Subscriber<? super MuxProgress> subscriber) {
+                MuxProgressTracker tracker;
+                try {
+                    Container container = MovieWriter.build(movie);
+                    tracker = new MuxProgressTracker(container, intervalMillis, subscriber);
+                    MovieWriter.write(container, outputFile, subscriber, tracker);
+                } catch (IOException e) {
+                    if (!subscriber.isUnsubscribed()) {
+                        logger.error(TAG, e.getMessage());
+                        subscriber.onError(e);
+                    }
+                    return;
+                }
+                if (!subscriber.isUnsubscribed()) {
+                    subscriber.onNext(tracker.done(outputFile));
+                    subscriber.onCompleted();
+                }
+            }
+        });
+    }
+
+    public static Observable<Long> output(final Movie movie, final WritableByteChannel outputChannel) {
+        return Observable.create(new Observable.OnSubscribe<Long>() {
+            @Override
+            public void call(Subscriber<? super Long> subscriber) {
+                long bytesWritten;
+                try {
+                    bytesWritten = MovieWriter.write(MovieWriter.build(movie), outputChannel, subscriber, null);
+                } catch (IOException e) {
+                    if (!subscriber.isUnsubscribed()) {
+                        logger.error(TAG, e.getMessage());
+                        subscriber.onError(e);
+                    }
+                    return;
+                }
+                if (!subscriber.isUnsubscribed()) {
+                    subscriber.onNext(bytesWritten);
+                    subscriber.onCompleted();
+                }
+            }
+        });
+    }
+
+    public static Observable<Long> output(final Movie movie, final OutputStream outputStream) {
+        return output(movie, Channels.newChannel(outputStream)).doOnNext(new Action1<Long>() {
+            @Override
+            public void call(Long bytesWritten) {
+                try {
+                    outputStream.flush();
+                } catch (IOException e) {
+                    throw Exceptions.propagate(e);
+                }
+            }
+        });
+    }
+
+    public static Observable<File> output(Movie movie, String outputPath) {
+        return output(movie, new File(outputPath));
+    }
+
+    public static Observable<ByteBuffer> outputFragmented(@NonNull Movie movie, double fragmentDuration) {
+        return Observable.create(new FragmentedOutput(movie, fragmentDuration));
+    }
+
+    public static Observable<List<TrackInfo>> probeTracks(@NonNull final File inputFile) {
+        return Observable.defer(new Func0<Observable<List<TrackInfo>>>() {
+            @Override
+            public Observable<List<TrackInfo>> call() {
+                if (!inputFile.exists()) {
+                    return Observable.error(new FileNotFoundException(inputFile.getAbsolutePath()));
+                }
+                try {
+                    MovieBox moov = readMovieBox(inputFile);
+                    // the samples of a fragmented file are described by the fragments after the moov box
+                    boolean fragmented = !moov.getBoxes(MovieExtendsBox.class).isEmpty();
+                    List<TrackInfo> tracks = new ArrayList<>();
+                    for (TrackBox trackBox : moov.getBoxes(TrackBox.class)) {
+                        tracks.add(TrackInfo.of(trackBox, fragmented));
+                    }
+                    return Observable.just(tracks);
+                } catch (IOException e) {
+                    logger.error(TAG, e.getMessage());
+                    return Observable.error(e);
+                }
+            }
+        });
+    }
+
+    // only the moov box is read, the sample tables are never turned into tracks
+    private static MovieBox readMovieBox(File inputFile) throws IOException {
+        FileChannelSource source = new FileChannelSource(inputFile);
+        try {
+            return MovieReader.readMovieBox(source, MAX_MOOV_SIZE);
+        } finally {
+            source.close();
+        }
+    }
+
+    public static Observable<List<TrackMetaData>> probe(@NonNull File inputFile) {
+        return probeTracks(inputFile).map(new Func1<List<TrackInfo>, List<TrackMetaData>>() {
+            @Override
+            public List<TrackMetaData> call(List<TrackInfo> tracks) {
+                List<TrackMetaData> metaData = new ArrayList<>(tracks.size());
+                for (TrackInfo track : tracks) {
+                    metaData.add(track.getTrackMetaData());
+                }
+                return metaData;
+            }
+        });
+    }
+
+    public static Observable<List<TrackStats>> analyze(@NonNull final Movie movie) {
+        return Observable.defer(new Func0<Observable<List<TrackStats>>>() {
+            @Override
+            public Observable<List<TrackStats>> call() {
+                List<TrackStats> stats = new ArrayList<>();
+                for (Track track : movie.getTracks()) {
+                    stats.add(TrackStats.of(track));
+                }
+                return Observable.just(stats);
+            }
+        });
+    }
+
+    public static Observable<List<TrackStats>> analyze(@NonNull File inputFile) {
+        return withMovie(inputFile, new Func1<Movie, Observable<List<TrackStats>>>() {
+            @Override
+            public Observable<List<TrackStats>> call(Movie movie) {
+                return analyze(movie);
+            }
+        });
+    }
+
+    public static Observable<TrackMetaData> getMetaDataByTrackId(final Movie movie, final long trackId) {
+        return Observable.defer(new Func0<Observable<TrackMetaData>>() {
+            @Override
+            public Observable<TrackMetaData> call() {
+                if (movie == null) {
+                    return Observable.error(new Throwable("Movie is null"));
+                }
+                Track selectedTrack = movie.getTrackByTrackId(trackId);
+                if (selectedTrack == null) {
+                    return Observable.error(new Throwable("The provided input duesn't contain track with ID: " + trackId));
+                }
+                return Observable.just(selectedTrack.getTrackMetaData());
+            }
+        });
+    }
+
+    public static Observable<List<TrackMetaData>> getAllMetaData(Movie movie) {
+        return Observable.from(movie.getTracks())
+                .filter(new NullFilter())
+                .map(new Func1<Track, TrackMetaData>() {
+                    @Override
+                    public TrackMetaData call(Track track) {
+                        return track.getTrackMetaData();
+                    }
+                })
+                .filter(new NullFilter())
+                .toList();
+    }
+
+}
@@ -0,0 +1,149 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.muxer.Track;
+
+/**
+ * Decoding times of every sample of a {@link Track} and of its sync samples, computed once so
+ * that time based lookups are binary searches instead of full scans over the sample table.
+ */
+public class SampleTimeline {
+
+    private final long timescale;
+    // decodingTimes[i] is the start of sample i (0 based), the last element is the track duration
+    private final long[] decodingTimes;
+    // sync sample numbers start with 1, as in the track
+    private final long[] syncSamples;
+    private final long[] syncSampleTimes;
+
+    public SampleTimeline(long timescale, long[] decodingTimes, long[] syncSamples) {
+        this.timescale = timescale;
+        this.decodingTimes = decodingTimes;
+        this.syncSamples = syncSamples;
+        if (syncSamples != null && syncSamples.length > 0) {
+            int sampleCount = getSampleCount();
+            syncSampleTimes = new long[syncSamples.length];
+            for (int i = 0; i < syncSamples.length; i++) {
+                syncSampleTimes[i] = decodingTimes[(int) Math.min(syncSamples[i] - 1, sampleCount)];
+            }
+        } else {
+            syncSampleTimes = null;
+        }
+    }
+
+    public static SampleTimeline of(Track track) {
+        long[] durations = track.getSampleDurations();
+        long[] decodingTimes = new long[durations.length + 1];
+        for (int i = 0; i < durations.length; i++) {
+            decodingTimes[i + 1] = decodingTimes[i] + durations[i];
+        }
+        return new SampleTimeline(track.getTrackMetaData().getTimescale(), decodingTimes, track.getSyncSamples());
+    }
+
+    public long getTimescale() {
+        return timescale;
+    }
+
+    public int getSampleCount() {
+        return decodingTimes.length - 1;
+    }
+
+    public long[] getDecodingTimes() {
+        return decodingTimes;
+    }
+
+    public long[] getSyncSamples() {
+        return syncSamples;
+    }
+
+    public boolean hasSyncSamples() {
+        return syncSampleTimes != null;
+    }
+
+    public double getDuration() {
+        return toSeconds(decodingTimes[decodingTimes.length - 1]);
+    }
+
+    public double getTime(long sample) {
+        return toSeconds(decodingTimes[(int) sample]);
+    }
+
+    /**
+     * Returns the index of the sample that is being decoded at the given time. Samples sharing
+     * the same decoding time resolve to the first of them. Returns -1 if the time is before the
+     * first sample.
+     */
+    public long sampleAt(double time) {
+        int low = 0;
+        int high = getSampleCount() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (toSeconds(decodingTimes[mid]) <= time) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found <= 0) {
+            return found;
+        }
+        return lowerBound(decodingTimes, 0, found, decodingTimes[found]);
+    }
+
+    /**
+     * Returns the time of the last sync sample that is not after the given time, or 0 if there is
+     * no such sample.
+     */
+    public double previousSyncTime(double time) {
+        int next = firstSyncSampleAfter(time);
+        if (next == syncSampleTimes.length) {
+            return toSeconds(syncSampleTimes[syncSampleTimes.length - 1]);
+        }
+        return next == 0 ? 0 : toSeconds(syncSampleTimes[next - 1]);
+    }
+
+    /**
+     * Returns the time of the first sync sample after the given time, or the time of the last sync
+     * sample if there is no such sample.
+     */
+    public double nextSyncTime(double time) {
+        int next = firstSyncSampleAfter(time);
+        if (next == syncSampleTimes.length) {
+            return toSeconds(syncSampleTimes[syncSampleTimes.length - 1]);
+        }
+        return toSeconds(syncSampleTimes[next]);
+    }
+
+    private int firstSyncSampleAfter(double time) {
+        int low = 0;
+        int high = syncSampleTimes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (toSeconds(syncSampleTimes[mid]) > time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(long[] values, int from, int to, long key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private double toSeconds(long time) {
+        return (double) time / (double) timescale;
+    }
+}
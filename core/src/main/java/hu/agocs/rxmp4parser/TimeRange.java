@@ -0,0 +1,49 @@
+package hu.agocs.rxmp4parser;
+
+public class TimeRange {
+
+    private final double from;
+    private final double to;
+
+    public TimeRange(double from, double to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public double getFrom() {
+        return from;
+    }
+
+    public double getTo() {
+        return to;
+    }
+
+    public double getDuration() {
+        return to - from;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TimeRange timeRange = (TimeRange) o;
+        return Double.compare(timeRange.from, from) == 0 && Double.compare(timeRange.to, to) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        long temp = Double.doubleToLongBits(from);
+        int result = (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(to);
+        return 31 * result + (int) (temp ^ (temp >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "TimeRange{" + from + " - " + to + "}";
+    }
+}
@@ -0,0 +1,121 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.boxes.iso14496.part12.HandlerBox;
+import org.mp4parser.boxes.iso14496.part12.MediaHeaderBox;
+import org.mp4parser.boxes.iso14496.part12.SampleSizeBox;
+import org.mp4parser.boxes.iso14496.part12.SampleTableBox;
+import org.mp4parser.boxes.iso14496.part12.TrackBox;
+import org.mp4parser.boxes.iso14496.part12.TrackHeaderBox;
+import org.mp4parser.boxes.sampleentry.SampleEntry;
+import org.mp4parser.muxer.TrackMetaData;
+
+/**
+ * Header level description of a track, read from the track's boxes only. The moov box of a
+ * fragmented file does not describe the samples in its fragments, so for such a track the duration
+ * and the sample count are {@link #UNKNOWN}.
+ */
+public class TrackInfo {
+
+    public static final long UNKNOWN = -1;
+
+    private final TrackMetaData trackMetaData;
+    private final String handler;
+    private final String codec;
+    private final long duration;
+    private final long sampleCount;
+
+    public TrackInfo(TrackMetaData trackMetaData, String handler, String codec, long duration, long sampleCount) {
+        this.trackMetaData = trackMetaData;
+        this.handler = handler;
+        this.codec = codec;
+        this.duration = duration;
+        this.sampleCount = sampleCount;
+    }
+
+    public static TrackInfo of(TrackBox trackBox) {
+        return of(trackBox, false);
+    }
+
+    /**
+     * @param fragmented whether the moov box holding the track has an mvex box
+     */
+    public static TrackInfo of(TrackBox trackBox, boolean fragmented) {
+        TrackHeaderBox tkhd = trackBox.getTrackHeaderBox();
+        MediaHeaderBox mdhd = trackBox.getMediaBox().getMediaHeaderBox();
+        HandlerBox hdlr = trackBox.getMediaBox().getHandlerBox();
+        SampleTableBox stbl = trackBox.getSampleTableBox();
+
+        TrackMetaData trackMetaData = new TrackMetaData();
+        trackMetaData.setTrackId(tkhd.getTrackId());
+        trackMetaData.setCreationTime(mdhd.getCreationTime());
+        trackMetaData.setModificationTime(mdhd.getModificationTime());
+        trackMetaData.setLanguage(mdhd.getLanguage());
+        trackMetaData.setTimescale(mdhd.getTimescale());
+        trackMetaData.setWidth(tkhd.getWidth());
+        trackMetaData.setHeight(tkhd.getHeight());
+        trackMetaData.setLayer(tkhd.getLayer());
+        trackMetaData.setGroup(tkhd.getAlternateGroup());
+        trackMetaData.setVolume(tkhd.getVolume());
+        trackMetaData.setMatrix(tkhd.getMatrix());
+
+        String codec = null;
+        long sampleCount = 0;
+        if (stbl != null) {
+            SampleEntry sampleEntry = stbl.getSampleDescriptionBox() != null ? stbl.getSampleDescriptionBox().getSampleEntry() : null;
+            codec = sampleEntry != null ? sampleEntry.getType() : null;
+            SampleSizeBox stsz = stbl.getSampleSizeBox();
+            sampleCount = stsz != null ? stsz.getSampleCount() : 0;
+        }
+        long duration = mdhd.getDuration();
+        if (fragmented) {
+            duration = UNKNOWN;
+            sampleCount = UNKNOWN;
+        }
+        return new TrackInfo(trackMetaData, hdlr != null ? hdlr.getHandlerType() : null, codec, duration, sampleCount);
+    }
+
+    public TrackMetaData getTrackMetaData() {
+        return trackMetaData;
+    }
+
+    public String getHandler() {
+        return handler;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    /**
+     * Returns the duration in the timescale of the track, or {@link #UNKNOWN} for a fragmented file.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the duration in seconds, or {@link #UNKNOWN} for a fragmented file.
+     */
+    public double getDurationInSeconds() {
+        return duration == UNKNOWN ? UNKNOWN : (double) duration / (double) trackMetaData.getTimescale();
+    }
+
+    /**
+     * Returns the number of samples, or {@link #UNKNOWN} for a fragmented file.
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public boolean isFragmented() {
+        return duration == UNKNOWN;
+    }
+
+    @Override
+    public String toString() {
+        if (isFragmented()) {
+            return "TrackInfo{" + handler + ", " + codec + ", fragmented}";
+        }
+        return "TrackInfo{" + handler + ", " + codec + ", " + getDurationInSeconds() + "s, " + sampleCount + " samples}";
+    }
+}
@@ -0,0 +1,219 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.muxer.Sample;
+import org.mp4parser.muxer.Track;
+
+import java.util.List;
+
+import hu.agocs.rxmp4parser.io.SourceTrack;
+
+/**
+ * GOP and bitrate statistics of a track, computed in one pass over the sample sizes, durations
+ * and sync samples. No sample data is read. The sizes of a parsed file come from its sample size
+ * table, other tracks are asked for the size of each sample.
+ */
+public class TrackStats {
+
+    private final long trackId;
+    private final String handler;
+    private final long timescale;
+    private final int sampleCount;
+    private final long duration;
+    private final long totalSize;
+    private final long maxSampleSize;
+    // bytes per second of decoding time, bitrates are reported in bits
+    private final long[] bytesPerSecond;
+    // samples from each sync sample to the next one or to the end, empty without a sync table
+    private final int[] gopLengths;
+    // decoding time between consecutive sync samples, in the timescale of the track
+    private final long[] keyframeIntervals;
+
+    private TrackStats(long trackId, String handler, long timescale, int sampleCount, long duration, long totalSize,
+                       long maxSampleSize, long[] bytesPerSecond, int[] gopLengths, long[] keyframeIntervals) {
+        this.trackId = trackId;
+        this.handler = handler;
+        this.timescale = timescale;
+        this.sampleCount = sampleCount;
+        this.duration = duration;
+        this.totalSize = totalSize;
+        this.maxSampleSize = maxSampleSize;
+        this.bytesPerSecond = bytesPerSecond;
+        this.gopLengths = gopLengths;
+        this.keyframeIntervals = keyframeIntervals;
+    }
+
+    public static TrackStats of(Track track) {
+        long[] durations = track.getSampleDurations();
+        long[] syncSamples = track.getSyncSamples();
+        long timescale = track.getTrackMetaData().getTimescale();
+        int sampleCount = durations.length;
+
+        long duration = 0;
+        for (long sampleDuration : durations) {
+            duration += sampleDuration;
+        }
+
+        long[] sizes = null;
+        List<Sample> samples = null;
+        if (track instanceof SourceTrack) {
+            sizes = ((SourceTrack) track).getSampleSizes();
+        } else {
+            samples = track.getSamples();
+        }
+
+        long[] bytesPerSecond = new long[(int) Math.max(1, (duration + timescale - 1) / timescale)];
+        int syncCount = syncSamples != null ? syncSamples.length : 0;
+        int[] gopLengths = new int[syncCount];
+        long[] keyframeIntervals = new long[Math.max(0, syncCount - 1)];
+
+        long totalSize = 0;
+        long maxSampleSize = 0;
+        long time = 0;
+        int sync = 0;
+        int lastSyncIndex = -1;
+        long lastSyncTime = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            long size = sizes != null ? sizes[i] : samples.get(i).getSize();
+            totalSize += size;
+            maxSampleSize = Math.max(maxSampleSize, size);
+            bytesPerSecond[(int) (time / timescale)] += size;
+
+            if (sync < syncCount && syncSamples[sync] == i + 1) {
+                if (lastSyncIndex >= 0) {
+                    gopLengths[sync - 1] = i - lastSyncIndex;
+                    keyframeIntervals[sync - 1] = time - lastSyncTime;
+                }
+                lastSyncIndex = i;
+                lastSyncTime = time;
+                sync++;
+            }
+            time += durations[i];
+        }
+        if (lastSyncIndex >= 0) {
+            gopLengths[sync - 1] = sampleCount - lastSyncIndex;
+        }
+        if (sync < syncCount) {
+            // sync samples past the end of the track
+            int[] trimmedGops = new int[sync];
+            System.arraycopy(gopLengths, 0, trimmedGops, 0, sync);
+            gopLengths = trimmedGops;
+            long[] trimmedIntervals = new long[Math.max(0, sync - 1)];
+            System.arraycopy(keyframeIntervals, 0, trimmedIntervals, 0, trimmedIntervals.length);
+            keyframeIntervals = trimmedIntervals;
+        }
+
+        return new TrackStats(track.getTrackMetaData().getTrackId(), track.getHandler(), timescale, sampleCount,
+                duration, totalSize, maxSampleSize, bytesPerSecond, gopLengths, keyframeIntervals);
+    }
+
+    public long getTrackId() {
+        return trackId;
+    }
+
+    public String getHandler() {
+        return handler;
+    }
+
+    public long getTimescale() {
+        return timescale;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public double getDuration() {
+        return (double) duration / timescale;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public long getMaxSampleSize() {
+        return maxSampleSize;
+    }
+
+    public double getAverageBitrate() {
+        return duration > 0 ? totalSize * 8.0 * timescale / duration : 0;
+    }
+
+    /**
+     * Returns the bits of the samples starting in each second of decoding time. The last second
+     * is usually not a full one.
+     */
+    public long[] getBitrates() {
+        long[] bitrates = new long[bytesPerSecond.length];
+        for (int i = 0; i < bitrates.length; i++) {
+            bitrates[i] = bytesPerSecond[i] * 8;
+        }
+        return bitrates;
+    }
+
+    public long getMaxBitrate() {
+        long max = 0;
+        for (long bytes : bytesPerSecond) {
+            max = Math.max(max, bytes);
+        }
+        return max * 8;
+    }
+
+    public boolean hasSyncSamples() {
+        return gopLengths.length > 0;
+    }
+
+    /**
+     * Returns the number of samples from each sync sample to the next one, the last GOP ends with
+     * the track. Empty if the track has no sync sample table, in which case every sample is a sync
+     * sample.
+     */
+    public int[] getGopLengths() {
+        return gopLengths.clone();
+    }
+
+    public int getMinGopLength() {
+        int min = gopLengths.length > 0 ? Integer.MAX_VALUE : 1;
+        for (int length : gopLengths) {
+            min = Math.min(min, length);
+        }
+        return min;
+    }
+
+    public int getMaxGopLength() {
+        int max = 1;
+        for (int length : gopLengths) {
+            max = Math.max(max, length);
+        }
+        return max;
+    }
+
+    public double getAverageGopLength() {
+        return gopLengths.length > 0 ? (double) sampleCount / gopLengths.length : 1;
+    }
+
+    /**
+     * Returns the decoding time between consecutive sync samples in seconds.
+     */
+    public double[] getKeyframeIntervals() {
+        double[] intervals = new double[keyframeIntervals.length];
+        for (int i = 0; i < intervals.length; i++) {
+            intervals[i] = (double) keyframeIntervals[i] / timescale;
+        }
+        return intervals;
+    }
+
+    public double getMaxKeyframeInterval() {
+        long max = 0;
+        for (long interval : keyframeIntervals) {
+            max = Math.max(max, interval);
+        }
+        return (double) max / timescale;
+    }
+
+    @Override
+    public String toString() {
+        return "TrackStats{" + handler + " " + trackId + ", " + sampleCount + " samples, " + getDuration() + " s, "
+                + Math.round(getAverageBitrate()) + " bps avg, " + getMaxBitrate() + " bps max, max sample "
+                + maxSampleSize + ", GOP " + getMinGopLength() + ".." + getMaxGopLength() + "}";
+    }
+}
@@ -0,0 +1,94 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.muxer.tracks.AppendTrack;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hu.agocs.rxmp4parser.tracks.SegmentedAppendTrack;
+
+public class Utils {
+
+    public static Movie mux(Iterable<? extends Track> tracks) {
+        Mp4Metrics metrics = RxMp4Parser.getMetrics();
+        long start = metrics != Mp4Metrics.NONE ? System.nanoTime() : 0;
+        Movie movie = new Movie();
+        for (Track track : tracks) {
+            movie.addTrack(track);
+        }
+        if (metrics != Mp4Metrics.NONE) {
+            metrics.onStage(Mp4Metrics.MUX, System.nanoTime() - start, getSampleCount(movie.getTracks()), -1);
+        }
+        return movie;
+    }
+
+    public static Movie mux(Track... tracks) {
+        return mux(Arrays.asList(tracks));
+    }
+
+    public static Track append(List<? extends Track> tracks) throws IOException {
+        Mp4Metrics metrics = RxMp4Parser.getMetrics();
+        long start = metrics != Mp4Metrics.NONE ? System.nanoTime() : 0;
+        Track track;
+        // the segmented track keeps views on the inputs, AppendTrack is only needed
+        // when the sample descriptions have to be merged
+        if (SegmentedAppendTrack.canAppend(tracks)) {
+            track = new SegmentedAppendTrack(tracks);
+        } else {
+            track = new AppendTrack(tracks.toArray(new Track[tracks.size()]));
+        }
+        if (metrics != Mp4Metrics.NONE) {
+            metrics.onStage(Mp4Metrics.APPEND, System.nanoTime() - start, track.getSamples().size(), -1);
+        }
+        return track;
+    }
+
+    /**
+     * Adds the tracks to the groups of tracks which are appended together. A track goes into the
+     * group of its handler and its index among the tracks with the same handler, so the second
+     * audio track of every input ends up in the same group. New groups are added at the end.
+     */
+    public static void groupByHandler(Map<String, List<Track>> groups, Iterable<? extends Track> tracks) {
+        Map<String, Integer> handlerCounts = new HashMap<>();
+        for (Track track : tracks) {
+            Integer count = handlerCounts.get(track.getHandler());
+            int index = count == null ? 0 : count;
+            handlerCounts.put(track.getHandler(), index + 1);
+
+            String key = track.getHandler() + "#" + index;
+            List<Track> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(track);
+        }
+    }
+
+    public static long getSampleCount(Iterable<? extends Track> tracks) {
+        long count = 0;
+        for (Track track : tracks) {
+            count += track.getSamples().size();
+        }
+        return count;
+    }
+
+    public static double correctTimeToSyncSample(Track track, double cutHere, boolean next) {
+        return correctTimeToSyncSample(SampleTimeline.of(track), cutHere, next);
+    }
+
+    public static double correctTimeToSyncSample(SampleTimeline timeline, double cutHere, boolean next) {
+        if (next) {
+            return timeline.nextSyncTime(cutHere);
+        } else {
+            return timeline.previousSyncTime(cutHere);
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+package hu.agocs.rxmp4parser.io;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches a {@link DataSource} in fixed-size blocks, so the many small reads of parsing and of
+ * sample access turn into a few large reads of the underlying source. A missing block is read
+ * together with the missing blocks after it, up to readAheadBlocks blocks in one read. At most
+ * maxBlocks blocks are kept, the least recently used one is dropped first.
+ */
+public class BlockCacheDataSource implements DataSource {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_BLOCKS = 256;
+    public static final int DEFAULT_READ_AHEAD_BLOCKS = 4;
+
+    private final DataSource source;
+    private final int blockSize;
+    private final int maxBlocks;
+    private final int readAheadBlocks;
+    private final LinkedHashMap<Long, byte[]> blocks;
+
+    private long size = -1;
+    private long hitCount;
+    private long missCount;
+    private long sourceReadCount;
+    private long sourceBytesRead;
+
+    public BlockCacheDataSource(DataSource source) {
+        this(source, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BLOCKS, DEFAULT_READ_AHEAD_BLOCKS);
+    }
+
+    /**
+     * Returns a cache with the default sizes over an {@link HttpRangeDataSource}, the source
+     * {@link hu.agocs.rxmp4parser.RxMp4Parser#from(URL)} reads through. Pass it to
+     * {@link hu.agocs.rxmp4parser.RxMp4Parser#from(DataSource)} to keep access to the counters.
+     */
+    public static BlockCacheDataSource of(URL url) {
+        return new BlockCacheDataSource(new HttpRangeDataSource(url));
+    }
+
+    public BlockCacheDataSource(DataSource source, int blockSize, int maxBlocks, int readAheadBlocks) {
+        if (blockSize <= 0 || maxBlocks <= 0 || readAheadBlocks <= 0) {
+            throw new IllegalArgumentException("The block size and counts have to be positive.");
+        }
+        this.source = source;
+        this.blockSize = blockSize;
+        this.maxBlocks = maxBlocks;
+        this.readAheadBlocks = Math.min(readAheadBlocks, maxBlocks);
+        this.blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > BlockCacheDataSource.this.maxBlocks;
+            }
+        };
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        if (size < 0) {
+            size = source.size();
+        }
+        return size;
+    }
+
+    @Override
+    public ByteBuffer get(long offset, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        read(offset, buffer);
+        buffer.rewind();
+        return buffer;
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer buffer) throws IOException {
+        if (offset + buffer.remaining() > size()) {
+            throw new IOException("Unexpected end of source at " + size());
+        }
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            long index = position / blockSize;
+            int blockOffset = (int) (position - index * blockSize);
+            byte[] block = block(index);
+            int length = Math.min(buffer.remaining(), block.length - blockOffset);
+            buffer.put(block, blockOffset, length);
+            position += length;
+        }
+    }
+
+    private synchronized byte[] block(long index) throws IOException {
+        byte[] block = blocks.get(index);
+        if (block != null) {
+            hitCount++;
+            return block;
+        }
+        missCount++;
+
+        long lastIndex = (size() - 1) / blockSize;
+        int count = 1;
+        while (count < readAheadBlocks && index + count <= lastIndex && !blocks.containsKey(index + count)) {
+            count++;
+        }
+        long start = index * blockSize;
+        ByteBuffer data = ByteBuffer.allocate((int) (Math.min(size(), (index + count) * blockSize) - start));
+        source.read(start, data);
+        sourceReadCount++;
+        sourceBytesRead += data.capacity();
+
+        byte[] array = data.array();
+        for (int i = count - 1; i >= 0; i--) {
+            int from = i * blockSize;
+            byte[] loaded = new byte[Math.min(blockSize, array.length - from)];
+            System.arraycopy(array, from, loaded, 0, loaded.length);
+            blocks.put(index + i, loaded);
+            if (i == 0) {
+                block = loaded;
+            }
+        }
+        return block;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getMaxBlocks() {
+        return maxBlocks;
+    }
+
+    public synchronized int getCachedBlockCount() {
+        return blocks.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests > 0 ? (double) hitCount / requests : 0;
+    }
+
+    public synchronized long getSourceReadCount() {
+        return sourceReadCount;
+    }
+
+    public synchronized long getSourceBytesRead() {
+        return sourceBytesRead;
+    }
+
+    public synchronized void clear() {
+        blocks.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        clear();
+        source.close();
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}
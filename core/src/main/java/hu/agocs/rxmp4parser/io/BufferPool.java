@@ -0,0 +1,143 @@
+package hu.agocs.rxmp4parser.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A bounded pool of direct buffers of the same size, used by the write path for copying sample
+ * data and collecting small writes. At most maxBuffers direct buffers are allocated by the pool,
+ * whether they are in use or waiting in the pool. {@link #acquire()} returns a pooled buffer,
+ * allocates a new one while below that limit, and returns a heap buffer once it is reached, so
+ * concurrent writes never block on each other. {@link #release(ByteBuffer)} keeps the direct
+ * buffers for later and drops the heap ones. The counters tell how many buffers had to be
+ * allocated, how many were reused and how often the limit was hit.
+ */
+public class BufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final int DEFAULT_MAX_BUFFERS = 8;
+
+    private static volatile BufferPool defaultPool = new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BUFFERS);
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+
+    // direct buffers allocated by this pool, in use or pooled
+    private int directCount;
+    private long allocatedCount;
+    private long heapCount;
+    private long reusedCount;
+    private long discardedCount;
+
+    public BufferPool(int bufferSize, int maxBuffers) {
+        if (bufferSize <= 0 || maxBuffers < 0) {
+            throw new IllegalArgumentException("Invalid buffer pool: " + maxBuffers + " buffers of " + bufferSize + " bytes");
+        }
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+    }
+
+    public static BufferPool getDefault() {
+        return defaultPool;
+    }
+
+    /**
+     * Replaces the pool used by the outputs started after this call.
+     */
+    public static void setDefault(BufferPool pool) {
+        defaultPool = pool;
+    }
+
+    /**
+     * Returns a cleared buffer of bufferSize bytes. It is a heap buffer if maxBuffers direct
+     * buffers are in use already.
+     */
+    public ByteBuffer acquire() {
+        synchronized (buffers) {
+            ByteBuffer buffer = buffers.pollFirst();
+            if (buffer != null) {
+                reusedCount++;
+                buffer.clear();
+                return buffer;
+            }
+            if (directCount >= maxBuffers) {
+                heapCount++;
+                return ByteBuffer.allocate(bufferSize);
+            }
+            directCount++;
+            allocatedCount++;
+        }
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        synchronized (buffers) {
+            if (buffers.size() < maxBuffers) {
+                buffers.addFirst(buffer);
+            } else {
+                discardedCount++;
+            }
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaxBuffers() {
+        return maxBuffers;
+    }
+
+    public int getPooledCount() {
+        synchronized (buffers) {
+            return buffers.size();
+        }
+    }
+
+    public long getAllocatedCount() {
+        synchronized (buffers) {
+            return allocatedCount;
+        }
+    }
+
+    /**
+     * Returns the number of direct buffers allocated by the pool which have not been discarded.
+     */
+    public int getDirectCount() {
+        synchronized (buffers) {
+            return directCount;
+        }
+    }
+
+    /**
+     * Returns how many times a heap buffer was returned because the limit had been reached.
+     */
+    public long getHeapCount() {
+        synchronized (buffers) {
+            return heapCount;
+        }
+    }
+
+    public long getReusedCount() {
+        synchronized (buffers) {
+            return reusedCount;
+        }
+    }
+
+    public long getDiscardedCount() {
+        synchronized (buffers) {
+            return discardedCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{" + getPooledCount() + "/" + maxBuffers + " x " + bufferSize + " bytes, allocated "
+                + getAllocatedCount() + ", reused " + getReusedCount() + ", heap " + getHeapCount()
+                + ", discarded " + getDiscardedCount() + "}";
+    }
+}
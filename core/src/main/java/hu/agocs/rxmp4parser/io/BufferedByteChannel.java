@@ -0,0 +1,138 @@
+package hu.agocs.rxmp4parser.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Collects the small writes of the box headers, sample tables and small samples into one pooled
+ * direct buffer, so the target gets a few large writes instead of thousands of small ones. Writes
+ * which do not fit into the buffer go straight to the target after the buffer is flushed.
+ * {@link #flush()} has to be called after the last write, and {@link #release()} returns the
+ * buffer to its {@link BufferPool}. {@link #close()} does both and closes the target.
+ * <p>
+ * Sample data of a {@link FileChannelSource} copied with {@link #transferFrom} goes directly to the
+ * target if it is a file or a socket, which the OS can copy into without reading the data into
+ * memory. Other sample data is read straight into the buffer. The target has to be in blocking mode.
+ */
+public class BufferedByteChannel implements WritableByteChannel {
+
+    private final WritableByteChannel target;
+    private final BufferPool pool;
+    private final boolean directTransfer;
+
+    private ByteBuffer buffer;
+    private long bytesFlushed;
+
+    public BufferedByteChannel(WritableByteChannel target) {
+        this(target, BufferPool.getDefault());
+    }
+
+    public BufferedByteChannel(WritableByteChannel target, BufferPool pool) {
+        this.target = target;
+        this.pool = pool;
+        this.directTransfer = target instanceof FileChannel || target instanceof SelectableChannel;
+    }
+
+    public WritableByteChannel getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns the number of bytes passed on to the target so far, without those still in the buffer.
+     */
+    public long getBytesFlushed() {
+        return bytesFlushed;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int size = src.remaining();
+        ByteBuffer buffer = buffer();
+        if (size > buffer.remaining()) {
+            flush();
+            if (size >= buffer.capacity()) {
+                writeFully(src);
+                return size;
+            }
+        }
+        buffer.put(src);
+        return size;
+    }
+
+    public void transferFrom(DataSource source, long offset, long size) throws IOException {
+        if (source instanceof FileChannelSource) {
+            FileChannel channel = ((FileChannelSource) source).getChannel();
+            if (directTransfer) {
+                flush();
+                FileChannelSource.transfer(channel, offset, size, target);
+                bytesFlushed += size;
+            } else {
+                FileChannelSource.transfer(channel, offset, size, this);
+            }
+            return;
+        }
+        ByteBuffer buffer = buffer();
+        long position = offset;
+        long end = offset + size;
+        while (position < end) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = (int) Math.min(buffer.remaining(), end - position);
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(slice.position() + length);
+            source.read(position, slice);
+            buffer.position(buffer.position() + length);
+            position += length;
+        }
+    }
+
+    public void flush() throws IOException {
+        if (buffer != null && buffer.position() > 0) {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Returns the buffer to the pool without writing what is left in it.
+     */
+    public void release() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private ByteBuffer buffer() {
+        if (buffer == null) {
+            buffer = pool.acquire();
+        }
+        return buffer;
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            bytesFlushed += target.write(src);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return target.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            release();
+            target.close();
+        }
+    }
+}
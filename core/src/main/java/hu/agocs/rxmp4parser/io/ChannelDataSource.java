@@ -0,0 +1,46 @@
+package hu.agocs.rxmp4parser.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * {@link DataSource} on a {@link SeekableByteChannel}. The channel has a single position, so the
+ * reads are serialized. SeekableByteChannel needs API level 24 on Android.
+ */
+public class ChannelDataSource implements DataSource {
+
+    private final SeekableByteChannel channel;
+
+    public ChannelDataSource(SeekableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public ByteBuffer get(long offset, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        read(offset, buffer);
+        buffer.rewind();
+        return buffer;
+    }
+
+    @Override
+    public synchronized void read(long offset, ByteBuffer buffer) throws IOException {
+        channel.position(offset);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of channel at " + channel.position());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
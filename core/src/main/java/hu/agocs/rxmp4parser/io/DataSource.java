@@ -0,0 +1,18 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.mp4parser.muxer.RandomAccessSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access input of a movie. {@link #get(long, long)} returns a new buffer positioned at 0,
+ * {@link #read(long, ByteBuffer)} fills the remaining part of the given buffer, and both fail if the
+ * source ends before the requested range. Implementations have to allow reads from several threads.
+ */
+public interface DataSource extends RandomAccessSource {
+
+    long size() throws IOException;
+
+    void read(long offset, ByteBuffer buffer) throws IOException;
+}
@@ -0,0 +1,203 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.mp4parser.Box;
+import org.mp4parser.Container;
+import org.mp4parser.IsoFile;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Sample;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.tools.IsoTypeWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import hu.agocs.rxmp4parser.Mp4Metrics;
+import hu.agocs.rxmp4parser.RxMp4Parser;
+import rx.Subscription;
+
+/**
+ * Writes every track of a Movie into its own file. When all tracks are {@link SourceTrack}s of the
+ * same file, the outputs are written side by side: the headers first, then the samples in the
+ * order of their offsets in the source, so the source is read once from start to end. Otherwise
+ * the outputs are written one after the other with {@link MovieWriter}.
+ */
+public class DemuxWriter {
+
+    private static final String TAG = "DemuxWriter";
+
+    private static final String MDAT = "mdat";
+
+    public static void write(Movie movie, List<File> outputFiles, Subscription subscription) throws IOException {
+        List<Track> tracks = movie.getTracks();
+        if (tracks.size() != outputFiles.size()) {
+            throw new IllegalArgumentException("Every track needs one output file.");
+        }
+        List<Container> containers = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            Movie single = new Movie();
+            single.setMatrix(movie.getMatrix());
+            single.addTrack(track);
+            containers.add(MovieWriter.build(single));
+        }
+
+        if (!isSingleSource(tracks)) {
+            for (int i = 0; i < tracks.size(); i++) {
+                MovieWriter.write(containers.get(i), outputFiles.get(i), subscription, null);
+            }
+            return;
+        }
+
+        if (subscription.isUnsubscribed()) {
+            throw new InterruptedIOException("The output has been cancelled.");
+        }
+        Mp4Metrics metrics = RxMp4Parser.getMetrics();
+        long start = metrics != Mp4Metrics.NONE ? System.nanoTime() : 0;
+        long bytesWritten = 0;
+        int count = tracks.size();
+        File[] temporaryFiles = new File[count];
+        FileOutputStream[] streams = new FileOutputStream[count];
+        BufferedByteChannel[] buffers = new BufferedByteChannel[count];
+        boolean written = false;
+        try {
+            TransferChannel[] channels = new TransferChannel[count];
+            for (int i = 0; i < count; i++) {
+                temporaryFiles[i] = MovieWriter.createTemporaryFile(outputFiles.get(i));
+                streams[i] = new FileOutputStream(temporaryFiles[i]);
+                buffers[i] = new BufferedByteChannel(streams[i].getChannel());
+                channels[i] = new TransferChannel(buffers[i], subscription);
+                writeHeaders(containers.get(i), channels[i]);
+            }
+            writeSamples(tracks, channels);
+            for (int i = 0; i < count; i++) {
+                writeTrailers(containers.get(i), channels[i]);
+                channels[i].flush();
+                streams[i].close();
+                streams[i] = null;
+                bytesWritten += channels[i].getBytesWritten();
+            }
+            written = true;
+        } finally {
+            for (int i = 0; i < count; i++) {
+                if (buffers[i] != null) {
+                    buffers[i].release();
+                }
+                if (streams[i] != null) {
+                    try {
+                        streams[i].close();
+                    } catch (IOException e) {
+                        RxMp4Parser.getLogger().error(TAG, e.getMessage());
+                    }
+                }
+                if (!written && temporaryFiles[i] != null && !temporaryFiles[i].delete()) {
+                    temporaryFiles[i].deleteOnExit();
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            try {
+                MovieWriter.moveTo(temporaryFiles[i], outputFiles.get(i));
+            } catch (IOException e) {
+                for (int j = i + 1; j < count; j++) {
+                    MovieWriter.deleteTemporaryFile(temporaryFiles[j]);
+                }
+                throw e;
+            }
+        }
+        if (metrics != Mp4Metrics.NONE) {
+            metrics.onStage(Mp4Metrics.WRITE, System.nanoTime() - start, -1, bytesWritten);
+        }
+    }
+
+    private static boolean isSingleSource(List<Track> tracks) {
+        DataSource source = null;
+        for (Track track : tracks) {
+            if (!(track instanceof SourceTrack)) {
+                return false;
+            }
+            DataSource trackSource = ((SourceTrack) track).getSource();
+            if (source != null && source != trackSource) {
+                return false;
+            }
+            source = trackSource;
+        }
+        return source != null;
+    }
+
+    // the boxes before the mdat, then the 16 byte header written by DefaultMp4Builder for the mdat
+    private static void writeHeaders(Container container, TransferChannel channel) throws IOException {
+        for (Box box : container.getBoxes()) {
+            if (MDAT.equals(box.getType())) {
+                ByteBuffer header = ByteBuffer.allocate(16);
+                long size = box.getSize();
+                boolean small = size < 0x100000000L;
+                IsoTypeWriter.writeUInt32(header, small ? size : 1);
+                header.put(IsoFile.fourCCtoBytes(MDAT));
+                if (small) {
+                    header.put(new byte[8]);
+                } else {
+                    IsoTypeWriter.writeUInt64(header, size);
+                }
+                header.rewind();
+                channel.write(header);
+                return;
+            }
+            box.getBox(channel);
+        }
+    }
+
+    private static void writeTrailers(Container container, TransferChannel channel) throws IOException {
+        boolean afterMdat = false;
+        for (Box box : container.getBoxes()) {
+            if (afterMdat) {
+                box.getBox(channel);
+            }
+            afterMdat |= MDAT.equals(box.getType());
+        }
+    }
+
+    // a merge of the sample lists by source offset, every track keeps its own sample order
+    private static void writeSamples(List<Track> tracks, TransferChannel[] channels) throws IOException {
+        int count = tracks.size();
+        List<List<Sample>> samples = new ArrayList<>(count);
+        int[] cursors = new int[count];
+        SourceSample[] next = new SourceSample[count];
+        for (int i = 0; i < count; i++) {
+            samples.add(tracks.get(i).getSamples());
+            next[i] = nextSample(samples.get(i), 0);
+        }
+        while (true) {
+            int track = -1;
+            long otherOffset = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                if (next[i] == null) {
+                    continue;
+                }
+                if (track < 0 || next[i].getOffset() < next[track].getOffset()) {
+                    if (track >= 0) {
+                        otherOffset = Math.min(otherOffset, next[track].getOffset());
+                    }
+                    track = i;
+                } else {
+                    otherOffset = Math.min(otherOffset, next[i].getOffset());
+                }
+            }
+            if (track < 0) {
+                return;
+            }
+            // the whole run of this track before the next sample of any other track
+            do {
+                next[track].writeTo(channels[track]);
+                next[track] = nextSample(samples.get(track), ++cursors[track]);
+            } while (next[track] != null && next[track].getOffset() <= otherOffset);
+        }
+    }
+
+    private static SourceSample nextSample(List<Sample> samples, int index) {
+        return index < samples.size() ? (SourceSample) samples.get(index) : null;
+    }
+}
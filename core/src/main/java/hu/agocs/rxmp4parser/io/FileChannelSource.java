@@ -0,0 +1,89 @@
+package hu.agocs.rxmp4parser.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DataSource} reading with positional reads on a {@link FileChannel}, so samples of the
+ * same source can be read from several threads at once. The number of sources which are open at
+ * the moment is counted, to help finding the ones which are never closed.
+ */
+public class FileChannelSource implements DataSource {
+
+    private static final AtomicInteger openCount = new AtomicInteger();
+
+    private final FileInputStream inputStream;
+    private final FileChannel channel;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public FileChannelSource(File file) throws IOException {
+        this.inputStream = new FileInputStream(file);
+        this.channel = inputStream.getChannel();
+        openCount.incrementAndGet();
+    }
+
+    public static int getOpenCount() {
+        return openCount.get();
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public ByteBuffer get(long offset, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        read(offset, buffer);
+        buffer.rewind();
+        return buffer;
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer buffer) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at " + position);
+            }
+            position += read;
+        }
+    }
+
+    public void transferTo(long offset, long size, WritableByteChannel target) throws IOException {
+        transfer(channel, offset, size, target);
+    }
+
+    static void transfer(FileChannel source, long offset, long size, WritableByteChannel target) throws IOException {
+        // transferTo may copy less than asked for, e.g. when the target is a non-blocking socket
+        long position = offset;
+        long end = offset + size;
+        while (position < end) {
+            long transferred = source.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file at " + position);
+            }
+            position += transferred;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            openCount.decrementAndGet();
+            channel.close();
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.mp4parser.Box;
+import org.mp4parser.Container;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.builder.FragmentedMp4Builder;
+import org.mp4parser.muxer.builder.TimeBasedFragmenter;
+import org.mp4parser.tools.ByteBufferByteChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import rx.Observer;
+import rx.observables.SyncOnSubscribe;
+
+/**
+ * Emits a fragmented MP4 one segment at a time: first the init segment (everything before the
+ * first moof), then every moof together with its mdat, then the trailing boxes. A segment is only
+ * serialized when it is requested, so the sample data of the following fragments is not read
+ * until the subscriber asks for it.
+ */
+public class FragmentedOutput extends SyncOnSubscribe<FragmentedOutput.Cursor, ByteBuffer> {
+
+    private static final String MOOF = "moof";
+    private static final String MDAT = "mdat";
+
+    private final Movie movie;
+    private final double fragmentDuration;
+
+    public FragmentedOutput(Movie movie, double fragmentDuration) {
+        this.movie = movie;
+        this.fragmentDuration = fragmentDuration;
+    }
+
+    @Override
+    protected Cursor generateState() {
+        FragmentedMp4Builder builder = new FragmentedMp4Builder();
+        builder.setFragmenter(new TimeBasedFragmenter(fragmentDuration));
+        Container container = builder.build(movie);
+        return new Cursor(container.getBoxes());
+    }
+
+    @Override
+    protected Cursor next(Cursor cursor, Observer<? super ByteBuffer> observer) {
+        if (!cursor.hasNext()) {
+            observer.onCompleted();
+            return cursor;
+        }
+        int from = cursor.position;
+        int to = cursor.nextSegmentEnd();
+        long size = 0;
+        for (int i = from; i < to; i++) {
+            size += cursor.boxes.get(i).getSize();
+        }
+        ByteBuffer segment = ByteBuffer.allocate((int) size);
+        ByteBufferByteChannel channel = new ByteBufferByteChannel(segment);
+        try {
+            for (int i = from; i < to; i++) {
+                cursor.boxes.get(i).getBox(channel);
+            }
+        } catch (IOException e) {
+            observer.onError(e);
+            return cursor;
+        }
+        segment.rewind();
+        cursor.position = to;
+        observer.onNext(segment);
+        return cursor;
+    }
+
+    static class Cursor {
+
+        private final List<Box> boxes;
+        private int position;
+
+        Cursor(List<Box> boxes) {
+            this.boxes = boxes;
+        }
+
+        boolean hasNext() {
+            return position < boxes.size();
+        }
+
+        int nextSegmentEnd() {
+            String type = boxes.get(position).getType();
+            int end = position + 1;
+            if (MOOF.equals(type)) {
+                // a fragment is the moof and the mdat holding its samples
+                if (end < boxes.size() && MDAT.equals(boxes.get(end).getType())) {
+                    end++;
+                }
+            } else {
+                // the init segment, or the trailing boxes after the last fragment
+                while (end < boxes.size() && !MOOF.equals(boxes.get(end).getType())) {
+                    end++;
+                }
+            }
+            return end;
+        }
+    }
+}
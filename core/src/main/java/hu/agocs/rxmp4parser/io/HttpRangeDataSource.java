@@ -0,0 +1,105 @@
+package hu.agocs.rxmp4parser.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link DataSource} reading a file from an HTTP server with range requests. Every read is a
+ * separate request, so it should be wrapped into a {@link BlockCacheDataSource}. The server has to
+ * answer range requests with 206 Partial Content.
+ */
+public class HttpRangeDataSource implements DataSource {
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 15000;
+
+    private final URL url;
+    private final int timeoutMillis;
+
+    private long size = -1;
+
+    public HttpRangeDataSource(URL url) {
+        this(url, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public HttpRangeDataSource(URL url, int timeoutMillis) {
+        this.url = url;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        if (size < 0) {
+            HttpURLConnection connection = open();
+            try {
+                connection.setRequestMethod("HEAD");
+                if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Unexpected response " + connection.getResponseCode() + " for " + url);
+                }
+                String length = connection.getHeaderField("Content-Length");
+                if (length == null) {
+                    throw new IOException("No Content-Length for " + url);
+                }
+                size = Long.parseLong(length.trim());
+            } finally {
+                connection.disconnect();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public ByteBuffer get(long offset, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        read(offset, buffer);
+        buffer.rewind();
+        return buffer;
+    }
+
+    @Override
+    public void read(long offset, ByteBuffer buffer) throws IOException {
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        HttpURLConnection connection = open();
+        try {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-" + (offset + buffer.remaining() - 1));
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Unexpected response " + connection.getResponseCode() + " for a range of " + url);
+            }
+            InputStream is = connection.getInputStream();
+            try {
+                byte[] chunk = new byte[Math.min(buffer.remaining(), 64 * 1024)];
+                while (buffer.hasRemaining()) {
+                    int read = is.read(chunk, 0, Math.min(chunk.length, buffer.remaining()));
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of " + url + " at " + (offset + buffer.position()));
+                    }
+                    buffer.put(chunk, 0, read);
+                }
+            } finally {
+                is.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        return connection;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return url.toString();
+    }
+}
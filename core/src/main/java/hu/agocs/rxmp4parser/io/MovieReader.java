@@ -0,0 +1,211 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.mp4parser.Box;
+import org.mp4parser.IsoFile;
+import org.mp4parser.boxes.iso14496.part12.MovieBox;
+import org.mp4parser.boxes.iso14496.part12.MovieExtendsBox;
+import org.mp4parser.boxes.iso14496.part12.SchemeTypeBox;
+import org.mp4parser.boxes.iso14496.part12.TrackBox;
+import org.mp4parser.muxer.CencMp4TrackImplImpl;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Mp4TrackImpl;
+import org.mp4parser.tools.ByteBufferByteChannel;
+import org.mp4parser.tools.Path;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import hu.agocs.rxmp4parser.Mp4Metrics;
+import hu.agocs.rxmp4parser.RxMp4Parser;
+import hu.agocs.rxmp4parser.Utils;
+
+/**
+ * Builds a {@link Movie} the same way {@link org.mp4parser.muxer.container.mp4.MovieCreator} does,
+ * but only the boxes describing the movie are read: the media data is skipped instead of being
+ * loaded into memory, and the samples of non-fragmented tracks become {@link SourceSample}s.
+ */
+public class MovieReader {
+
+    private static final String MOOV = "moov";
+    private static final String MDAT = "mdat";
+    private static final String FREE = "free";
+    private static final String SKIP = "skip";
+
+    public static Movie read(File file, FileChannelSource source) throws IOException {
+        return read(file.getAbsolutePath(), source);
+    }
+
+    public static Movie read(String name, DataSource source) throws IOException {
+        Mp4Metrics metrics = RxMp4Parser.getMetrics();
+        long start = metrics != Mp4Metrics.NONE ? System.nanoTime() : 0;
+        IsoFile isoFile = readHeaders(source);
+        MovieBox moov = isoFile.getMovieBox();
+        if (moov == null) {
+            throw new IOException("No moov box found in " + name);
+        }
+        boolean fragmented = !moov.getBoxes(MovieExtendsBox.class).isEmpty();
+        Movie movie = new Movie();
+        for (TrackBox trackBox : moov.getBoxes(TrackBox.class)) {
+            long trackId = trackBox.getTrackHeaderBox().getTrackId();
+            SchemeTypeBox schm = Path.getPath(trackBox, "mdia[0]/minf[0]/stbl[0]/stsd[0]/enc.[0]/sinf[0]/schm[0]");
+            if (schm != null && (schm.getSchemeType().equals("cenc") || schm.getSchemeType().equals("cbc1"))) {
+                movie.addTrack(new CencMp4TrackImplImpl(trackId, isoFile, source, name + "[" + trackId + "]"));
+            } else {
+                Mp4TrackImpl track = new Mp4TrackImpl(trackId, isoFile, source, name + "[" + trackId + "]");
+                if (fragmented) {
+                    movie.addTrack(track);
+                } else {
+                    movie.addTrack(new SourceTrack(track, trackBox, source));
+                }
+            }
+        }
+        movie.setMatrix(moov.getMovieHeaderBox().getMatrix());
+        if (metrics != Mp4Metrics.NONE) {
+            long headerSize = 0;
+            for (Box box : isoFile.getBoxes()) {
+                headerSize += box instanceof SkippedBox ? 0 : box.getSize();
+            }
+            metrics.onStage(Mp4Metrics.PARSE, System.nanoTime() - start, Utils.getSampleCount(movie.getTracks()), headerSize);
+        }
+        return movie;
+    }
+
+    /**
+     * Parses every top level box of the source except the ones holding media data or padding,
+     * which are replaced by placeholders of the same size. The parsed boxes keep their positions
+     * in the source, the sample lists of fragmented tracks find their data through them.
+     */
+    public static IsoFile readHeaders(DataSource source) throws IOException {
+        ByteArrayOutputStream boxes = new ByteArrayOutputStream();
+        List<BoxHeader> layout = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long size = source.size();
+        long position = 0;
+        BoxHeader box;
+        while ((box = readBoxHeader(source, position, size, header)) != null) {
+            if (!isSkipped(box)) {
+                long length = Math.min(box.size, size - position);
+                boxes.write(source.get(position, length).array(), 0, (int) length);
+            }
+            layout.add(box);
+            position += box.size;
+        }
+
+        IsoFile isoFile = new IsoFile(new ByteBufferByteChannel(ByteBuffer.wrap(boxes.toByteArray())));
+        Iterator<Box> parsed = isoFile.getBoxes().iterator();
+        List<Box> positioned = new ArrayList<>(layout.size());
+        for (BoxHeader entry : layout) {
+            if (isSkipped(entry)) {
+                positioned.add(new SkippedBox(entry.type, entry.size));
+            } else if (parsed.hasNext()) {
+                positioned.add(parsed.next());
+            }
+        }
+        isoFile.setBoxes(positioned);
+        return isoFile;
+    }
+
+    private static boolean isSkipped(BoxHeader box) {
+        return MDAT.equals(box.type) || FREE.equals(box.type) || SKIP.equals(box.type);
+    }
+
+    /**
+     * Reads and parses only the moov box. Nothing else is read apart from the 8 or 16 byte headers
+     * of the top level boxes before it.
+     */
+    public static MovieBox readMovieBox(DataSource source, long maxSize) throws IOException {
+        IsoFile isoFile = new IsoFile(new ByteBufferByteChannel(readMovieBoxBytes(source, maxSize)));
+        return isoFile.getMovieBox();
+    }
+
+    /**
+     * Returns the bytes of the moov box without parsing them.
+     */
+    public static ByteBuffer readMovieBoxBytes(DataSource source, long maxSize) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long size = source.size();
+        long position = 0;
+        BoxHeader box;
+        while ((box = readBoxHeader(source, position, size, header)) != null) {
+            if (MOOV.equals(box.type)) {
+                if (box.size > maxSize || position + box.size > size) {
+                    throw new IOException("Invalid moov box size " + box.size);
+                }
+                return source.get(position, box.size);
+            }
+            position += box.size;
+        }
+        throw new IOException("No moov box found");
+    }
+
+    private static BoxHeader readBoxHeader(DataSource source, long position, long size, ByteBuffer header) throws IOException {
+        if (position + 8 > size) {
+            return null;
+        }
+        header.clear();
+        header.limit((int) Math.min(16, size - position));
+        source.read(position, header);
+        header.flip();
+        long boxSize = header.getInt() & 0xffffffffL;
+        byte[] type = new byte[4];
+        header.get(type);
+        if (boxSize == 1) {
+            if (header.remaining() < 8) {
+                return null;
+            }
+            boxSize = header.getLong();
+        } else if (boxSize == 0) {
+            boxSize = size - position;
+        }
+        if (boxSize < 8) {
+            throw new IOException("Invalid box size " + boxSize + " at " + position);
+        }
+        return new BoxHeader(IsoFile.bytesToFourCC(type), boxSize);
+    }
+
+    /**
+     * Stands for a box which has not been read, it only keeps the position of the boxes after it.
+     */
+    private static class SkippedBox implements Box {
+
+        private final String type;
+        private final long size;
+
+        SkippedBox(String type, long size) {
+            this.type = type;
+            this.size = size;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public void getBox(WritableByteChannel writableByteChannel) throws IOException {
+            throw new IOException("The " + type + " box has not been read.");
+        }
+    }
+
+    private static class BoxHeader {
+
+        final String type;
+        final long size;
+
+        BoxHeader(String type, long size) {
+            this.type = type;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.mp4parser.Container;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.builder.DefaultMp4Builder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.WritableByteChannel;
+
+import hu.agocs.rxmp4parser.Mp4Metrics;
+import hu.agocs.rxmp4parser.RxMp4Parser;
+import hu.agocs.rxmp4parser.Utils;
+
+import rx.Subscription;
+
+/**
+ * Writes a Movie into a file or a channel. The data of a file goes into a temporary file next to
+ * the output, which is renamed to the output only when everything has been written. If writing
+ * fails or the given subscription is unsubscribed, the temporary file is deleted and the output is
+ * left untouched. Channels are written through a {@link BufferedByteChannel} and are not closed.
+ */
+public class MovieWriter {
+
+    private static final String TAG = "MovieWriter";
+
+    public static void write(Movie movie, File outputFile, Subscription subscription) throws IOException {
+        write(build(movie), outputFile, subscription, null);
+    }
+
+    public static Container build(Movie movie) {
+        Mp4Metrics metrics = RxMp4Parser.getMetrics();
+        long start = metrics != Mp4Metrics.NONE ? System.nanoTime() : 0;
+        Container container = new DefaultMp4Builder().build(movie);
+        if (metrics != Mp4Metrics.NONE) {
+            metrics.onStage(Mp4Metrics.BUILD, System.nanoTime() - start, Utils.getSampleCount(movie.getTracks()), -1);
+        }
+        return container;
+    }
+
+    public static void write(Container container, File outputFile, Subscription subscription, WriteListener listener) throws IOException {
+        if (subscription.isUnsubscribed()) {
+            throw new InterruptedIOException("The output has been cancelled.");
+        }
+
+        Mp4Metrics metrics = RxMp4Parser.getMetrics();
+        long start = metrics != Mp4Metrics.NONE ? System.nanoTime() : 0;
+        File temporaryFile = createTemporaryFile(outputFile);
+        long bytesWritten = 0;
+        boolean written = false;
+        FileOutputStream fos = null;
+        BufferedByteChannel buffered = null;
+        try {
+            fos = new FileOutputStream(temporaryFile);
+            buffered = new BufferedByteChannel(fos.getChannel());
+            TransferChannel channel = new TransferChannel(buffered, subscription, listener);
+            container.writeContainer(channel);
+            channel.flush();
+            fos.close();
+            fos = null;
+            written = true;
+            bytesWritten = channel.getBytesWritten();
+        } finally {
+            if (buffered != null) {
+                buffered.release();
+            }
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException e) {
+                    RxMp4Parser.getLogger().error(TAG, e.getMessage());
+                }
+            }
+            if (!written && !temporaryFile.delete()) {
+                temporaryFile.deleteOnExit();
+            }
+        }
+        moveTo(temporaryFile, outputFile);
+        if (metrics != Mp4Metrics.NONE) {
+            metrics.onStage(Mp4Metrics.WRITE, System.nanoTime() - start, -1, bytesWritten);
+        }
+    }
+
+    public static long write(Container container, WritableByteChannel target, Subscription subscription, WriteListener listener) throws IOException {
+        if (subscription.isUnsubscribed()) {
+            throw new InterruptedIOException("The output has been cancelled.");
+        }
+        Mp4Metrics metrics = RxMp4Parser.getMetrics();
+        long start = metrics != Mp4Metrics.NONE ? System.nanoTime() : 0;
+        BufferedByteChannel buffered = new BufferedByteChannel(target);
+        try {
+            TransferChannel channel = new TransferChannel(buffered, subscription, listener);
+            container.writeContainer(channel);
+            channel.flush();
+            if (metrics != Mp4Metrics.NONE) {
+                metrics.onStage(Mp4Metrics.WRITE, System.nanoTime() - start, -1, channel.getBytesWritten());
+            }
+            return channel.getBytesWritten();
+        } finally {
+            buffered.release();
+        }
+    }
+
+    static File createTemporaryFile(File outputFile) throws IOException {
+        File directory = outputFile.getAbsoluteFile().getParentFile();
+        return File.createTempFile("." + outputFile.getName() + ".", ".part", directory);
+    }
+
+    /**
+     * Renames the temporary file to the output file. Where a rename does not replace an existing
+     * file, the old output is moved aside first and put back if the new one can not take its place.
+     * The temporary file is deleted on failure, unless it is the only copy of the output left.
+     */
+    public static void moveTo(File temporaryFile, File outputFile) throws IOException {
+        if (temporaryFile.renameTo(outputFile)) {
+            return;
+        }
+        if (!outputFile.exists()) {
+            deleteTemporaryFile(temporaryFile);
+            throw new IOException("Could not move " + temporaryFile + " to " + outputFile);
+        }
+        // some file systems do not replace an existing file on rename
+        File backup = File.createTempFile("." + outputFile.getName() + ".", ".old", outputFile.getAbsoluteFile().getParentFile());
+        if (!backup.delete() || !outputFile.renameTo(backup)) {
+            deleteTemporaryFile(backup);
+            deleteTemporaryFile(temporaryFile);
+            throw new IOException("Could not move " + outputFile + " out of the way of " + temporaryFile);
+        }
+        if (temporaryFile.renameTo(outputFile)) {
+            deleteTemporaryFile(backup);
+            return;
+        }
+        if (backup.renameTo(outputFile)) {
+            deleteTemporaryFile(temporaryFile);
+            throw new IOException("Could not move " + temporaryFile + " to " + outputFile);
+        }
+        throw new IOException("Could not move " + temporaryFile + " to " + outputFile
+                + ", the previous output has been kept as " + backup);
+    }
+
+    static void deleteTemporaryFile(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.mp4parser.muxer.Sample;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A sample that knows where its bytes are in its source. Written into a {@link TransferChannel}
+ * the bytes are copied without a buffer of their own, see there. A sample of a
+ * {@link FileChannelSource} is copied with {@link java.nio.channels.FileChannel#transferTo} into
+ * any other channel too.
+ */
+public class SourceSample implements Sample {
+
+    private final DataSource source;
+    private final long offset;
+    private final long size;
+
+    public SourceSample(DataSource source, long offset, long size) {
+        this.source = source;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public DataSource getSource() {
+        return source;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        if (channel instanceof TransferChannel) {
+            ((TransferChannel) channel).transfer(source, offset, size);
+        } else if (source instanceof FileChannelSource) {
+            ((FileChannelSource) source).transferTo(offset, size, channel);
+        } else {
+            ByteBuffer buffer = source.get(offset, size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        try {
+            return source.get(offset, size);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.mp4parser.boxes.iso14496.part12.SampleSizeBox;
+import org.mp4parser.boxes.iso14496.part12.SampleTableBox;
+import org.mp4parser.boxes.iso14496.part12.TrackBox;
+import org.mp4parser.muxer.Sample;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.muxer.WrappingTrack;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Track parsed from a non-fragmented movie whose samples are {@link SourceSample}s, located with
+ * the chunk offset, sample to chunk and sample size tables of the source.
+ */
+public class SourceTrack extends WrappingTrack {
+
+    private final DataSource source;
+    private final long[] offsets;
+    private final long[] sizes;
+    private final List<Sample> samples;
+
+    public SourceTrack(Track track, TrackBox trackBox, DataSource source) {
+        super(track);
+        this.source = source;
+
+        SampleTableBox stbl = trackBox.getSampleTableBox();
+        long[] chunkOffsets = stbl.getChunkOffsetBox().getChunkOffsets();
+        long[] samplesPerChunk = stbl.getSampleToChunkBox().blowup(chunkOffsets.length);
+        SampleSizeBox stsz = stbl.getSampleSizeBox();
+
+        int sampleCount = (int) stsz.getSampleCount();
+        offsets = new long[sampleCount];
+        sizes = new long[sampleCount];
+        int sample = 0;
+        for (int chunk = 0; chunk < chunkOffsets.length && sample < sampleCount; chunk++) {
+            long offset = chunkOffsets[chunk];
+            for (long i = 0; i < samplesPerChunk[chunk] && sample < sampleCount; i++) {
+                long size = stsz.getSampleSizeAtIndex(sample);
+                offsets[sample] = offset;
+                sizes[sample] = size;
+                offset += size;
+                sample++;
+            }
+        }
+        samples = new SampleList();
+    }
+
+    public DataSource getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the sizes of the samples from the sample size table. The array is not copied.
+     */
+    public long[] getSampleSizes() {
+        return sizes;
+    }
+
+    @Override
+    public List<Sample> getSamples() {
+        return samples;
+    }
+
+    private class SampleList extends AbstractList<Sample> implements RandomAccess {
+
+        @Override
+        public Sample get(int index) {
+            return new SourceSample(source, offsets[index], sizes[index]);
+        }
+
+        @Override
+        public int size() {
+            return offsets.length;
+        }
+    }
+}
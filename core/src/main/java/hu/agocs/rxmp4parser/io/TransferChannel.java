@@ -0,0 +1,158 @@
+package hu.agocs.rxmp4parser.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import rx.Subscription;
+
+/**
+ * Output channel that copies {@link SourceSample}s without reading them into new buffers. Samples
+ * that follow each other in the same source are collected into one range and copied at once,
+ * which for interleaved chunks of a parsed file usually means one copy per chunk. Ranges of a
+ * {@link FileChannelSource} are copied with {@link FileChannel#transferTo}, other sources are read
+ * into a pooled direct buffer, or into the buffer of a {@link BufferedByteChannel} target.
+ * {@link #flush()} has to be called after the last write.
+ * <p>
+ * If a subscription is given, every write and every transferred block first checks whether it has
+ * been unsubscribed, and fails with an {@link InterruptedIOException} if it has. If a listener is
+ * given, it is told the number of bytes which have reached the target after every write,
+ * transferred block and flush. Bytes still in the buffer of a {@link BufferedByteChannel} target
+ * are not counted until it is flushed.
+ */
+public class TransferChannel implements WritableByteChannel {
+
+    // the longest single transfer, so cancellation is noticed within a few milliseconds
+    private static final long MAX_TRANSFER_SIZE = 8 * 1024 * 1024;
+
+    private final WritableByteChannel target;
+    private final Subscription subscription;
+    private final WriteListener listener;
+
+    private long bytesWritten;
+    private DataSource pendingSource;
+    private long pendingOffset;
+    private long pendingSize;
+
+    public TransferChannel(WritableByteChannel target) {
+        this(target, null);
+    }
+
+    public TransferChannel(WritableByteChannel target, Subscription subscription) {
+        this(target, subscription, null);
+    }
+
+    public TransferChannel(WritableByteChannel target, Subscription subscription, WriteListener listener) {
+        this.target = target;
+        this.subscription = subscription;
+        this.listener = listener;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public void transfer(DataSource source, long offset, long size) throws IOException {
+        if (source == pendingSource && offset == pendingOffset + pendingSize) {
+            pendingSize += size;
+            return;
+        }
+        flushPending();
+        pendingSource = source;
+        pendingOffset = offset;
+        pendingSize = size;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        flushPending();
+        checkCancelled();
+        int written = 0;
+        while (src.hasRemaining()) {
+            written += target.write(src);
+        }
+        onWritten(written);
+        return written;
+    }
+
+    /**
+     * Writes the pending range, and flushes the target if it is a {@link BufferedByteChannel}.
+     */
+    public void flush() throws IOException {
+        flushPending();
+        if (target instanceof BufferedByteChannel) {
+            ((BufferedByteChannel) target).flush();
+            onWritten(0);
+        }
+    }
+
+    private void flushPending() throws IOException {
+        if (pendingSource != null) {
+            long position = pendingOffset;
+            long end = pendingOffset + pendingSize;
+            while (position < end) {
+                checkCancelled();
+                long size = Math.min(end - position, MAX_TRANSFER_SIZE);
+                if (target instanceof BufferedByteChannel) {
+                    ((BufferedByteChannel) target).transferFrom(pendingSource, position, size);
+                } else if (pendingSource instanceof FileChannelSource) {
+                    FileChannelSource.transfer(((FileChannelSource) pendingSource).getChannel(), position, size, target);
+                } else {
+                    copy(pendingSource, position, size);
+                }
+                position += size;
+                onWritten(size);
+            }
+            pendingSource = null;
+            pendingSize = 0;
+        }
+    }
+
+    private void copy(DataSource source, long offset, long size) throws IOException {
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buffer = pool.acquire();
+        try {
+            long position = offset;
+            long end = offset + size;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                source.read(position, buffer);
+                buffer.flip();
+                position += buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+            }
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    private void onWritten(long size) {
+        bytesWritten += size;
+        if (listener != null) {
+            listener.onBytesWritten(target instanceof BufferedByteChannel
+                    ? ((BufferedByteChannel) target).getBytesFlushed() : bytesWritten);
+        }
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (subscription != null && subscription.isUnsubscribed()) {
+            throw new InterruptedIOException("The output has been cancelled.");
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return target.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        target.close();
+    }
+}
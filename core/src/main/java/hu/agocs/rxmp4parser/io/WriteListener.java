@@ -0,0 +1,6 @@
+package hu.agocs.rxmp4parser.io;
+
+public interface WriteListener {
+
+    void onBytesWritten(long bytesWritten);
+}
@@ -1,19 +1,22 @@
 package hu.agocs.rxmp4parser.operators;
 
 import org.mp4parser.muxer.Track;
-import org.mp4parser.muxer.tracks.AppendTrack;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import hu.agocs.rxmp4parser.RxMp4Parser;
+import hu.agocs.rxmp4parser.Utils;
 import rx.Observable;
 import rx.Subscriber;
 
-public class AppendTracks implements Observable.Operator<AppendTrack, Iterable<? extends Track>> {
+public class AppendTracks implements Observable.Operator<Track, Iterable<? extends Track>> {
+
+    private static final String TAG = "AppendTracks";
 
     @Override
-    public Subscriber<? super Iterable<? extends Track>> call(final Subscriber<? super AppendTrack> subscriber) {
+    public Subscriber<? super Iterable<? extends Track>> call(final Subscriber<? super Track> subscriber) {
 
         return new Subscriber<Iterable<? extends Track>>() {
             @Override
@@ -33,18 +36,23 @@ public class AppendTracks implements Observable.Operator<AppendTrack, Iterable<?
             @Override
             public void onNext(Iterable<? extends Track> tracks) {
                 if (!subscriber.isUnsubscribed()) {
-                    List<Track> trackList = new ArrayList<>();
-                    for (Track track : tracks) {
-                        trackList.add(track);
-                    }
+                    List<? extends Track> trackList = tracks instanceof List ? (List<? extends Track>) tracks : copy(tracks);
                     try {
-                        subscriber.onNext(new AppendTrack(trackList.toArray(new Track[trackList.size()])));
+                        subscriber.onNext(Utils.append(trackList));
                     } catch (IOException e) {
-                        e.printStackTrace();
+                        RxMp4Parser.getLogger().error(TAG, e.getMessage());
                         subscriber.onError(e);
                     }
                 }
             }
         };
     }
+
+    private static List<Track> copy(Iterable<? extends Track> tracks) {
+        List<Track> trackList = new ArrayList<>();
+        for (Track track : tracks) {
+            trackList.add(track);
+        }
+        return trackList;
+    }
 }
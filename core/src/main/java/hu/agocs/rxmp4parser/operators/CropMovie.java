@@ -0,0 +1,54 @@
+package hu.agocs.rxmp4parser.operators;
+
+import org.mp4parser.muxer.Movie;
+
+import hu.agocs.rxmp4parser.MovieClipper;
+import rx.Observable;
+import rx.Subscriber;
+
+public class CropMovie implements Observable.Operator<Movie, Movie> {
+
+    private final double from;
+    private final double to;
+
+    public CropMovie(double from, double to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public Subscriber<? super Movie> call(final Subscriber<? super Movie> subscriber) {
+        return new Subscriber<Movie>() {
+            @Override
+            public void onCompleted() {
+                if (!subscriber.isUnsubscribed()) {
+                    subscriber.onCompleted();
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                if (!subscriber.isUnsubscribed()) {
+                    subscriber.onError(e);
+                }
+            }
+
+            @Override
+            public void onNext(Movie movie) {
+                // the clip gets new tracks, the incoming movie is left untouched
+                Movie clip;
+                try {
+                    clip = new MovieClipper(movie).clip(from, to);
+                } catch (RuntimeException e) {
+                    if (!subscriber.isUnsubscribed()) {
+                        subscriber.onError(e);
+                    }
+                    return;
+                }
+                if (!subscriber.isUnsubscribed()) {
+                    subscriber.onNext(clip);
+                }
+            }
+        };
+    }
+}
@@ -3,9 +3,6 @@ package hu.agocs.rxmp4parser.operators;
 import org.mp4parser.muxer.Movie;
 import org.mp4parser.muxer.Track;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import hu.agocs.rxmp4parser.Utils;
 import rx.Observable;
 import rx.Subscriber;
@@ -33,10 +30,6 @@ public class MuxTracks implements Observable.Operator<Movie, Iterable<? extends
             @Override
             public void onNext(Iterable<? extends Track> tracks) {
                 if (!subscriber.isUnsubscribed()) {
-                    List<Track> trackList = new ArrayList<>();
-                    for (Track track : tracks) {
-                        trackList.add(track);
-                    }
                     subscriber.onNext(Utils.mux(tracks));
                 }
             }
@@ -0,0 +1,260 @@
+package hu.agocs.rxmp4parser.tracks;
+
+import org.mp4parser.boxes.iso14496.part12.CompositionTimeToSample;
+import org.mp4parser.boxes.iso14496.part12.SampleDependencyTypeBox;
+import org.mp4parser.boxes.iso14496.part12.SampleDescriptionBox;
+import org.mp4parser.boxes.iso14496.part12.SubSampleInformationBox;
+import org.mp4parser.muxer.AbstractTrack;
+import org.mp4parser.muxer.Sample;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.muxer.TrackMetaData;
+import org.mp4parser.muxer.tracks.AppendTrack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Appends tracks without copying their sample tables. The sample list is a view over the sample
+ * lists of the segments: a lookup finds the segment with a binary search over the sample offsets of
+ * the segments. The duration and sync sample arrays are only built when they are first asked for.
+ * <p>
+ * Unlike {@link AppendTrack} it does not merge differing sample descriptions, see
+ * {@link #canAppend(List)}.
+ */
+public class SegmentedAppendTrack extends AbstractTrack {
+
+    private final Track[] tracks;
+    private final List<Sample>[] samples;
+    // sampleOffsets[i] is the index of the first sample of segment i, the last element is the sample count
+    private final int[] sampleOffsets;
+    private final List<Sample> sampleList = new SampleList();
+
+    private long[] sampleDurations;
+    private long[] syncSamples;
+    private boolean syncSamplesComputed;
+    private List<CompositionTimeToSample.Entry> compositionTimeEntries;
+    private List<SampleDependencyTypeBox.Entry> sampleDependencies;
+    private boolean sampleDependenciesComputed;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SegmentedAppendTrack(List<? extends Track> tracks) {
+        super(AppendTrack.appendTracknames(tracks.toArray(new Track[tracks.size()])));
+        this.tracks = tracks.toArray(new Track[tracks.size()]);
+        this.samples = new List[this.tracks.length];
+        this.sampleOffsets = new int[this.tracks.length + 1];
+        for (int i = 0; i < this.tracks.length; i++) {
+            samples[i] = this.tracks[i].getSamples();
+            sampleOffsets[i + 1] = sampleOffsets[i] + samples[i].size();
+        }
+    }
+
+    /**
+     * Returns true if the tracks can be appended by this class: they have the same handler,
+     * timescale and byte-identical sample descriptions.
+     */
+    public static boolean canAppend(List<? extends Track> tracks) throws IOException {
+        if (tracks.isEmpty()) {
+            return false;
+        }
+        Track first = tracks.get(0);
+        byte[] stsd = toBytes(first.getSampleDescriptionBox());
+        for (Track track : tracks) {
+            if (!first.getHandler().equals(track.getHandler())
+                    || first.getTrackMetaData().getTimescale() != track.getTrackMetaData().getTimescale()
+                    || !Arrays.equals(stsd, toBytes(track.getSampleDescriptionBox()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] toBytes(SampleDescriptionBox stsd) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        stsd.getBox(Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+
+    public int getSegmentCount() {
+        return tracks.length;
+    }
+
+    int segmentOf(int sample) {
+        int low = 0;
+        int high = tracks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (sampleOffsets[mid] <= sample) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public List<Sample> getSamples() {
+        return sampleList;
+    }
+
+    @Override
+    public SampleDescriptionBox getSampleDescriptionBox() {
+        return tracks[0].getSampleDescriptionBox();
+    }
+
+    @Override
+    public synchronized long[] getSampleDurations() {
+        if (sampleDurations == null) {
+            sampleDurations = new long[sampleOffsets[tracks.length]];
+            for (int i = 0; i < tracks.length; i++) {
+                long[] durations = tracks[i].getSampleDurations();
+                System.arraycopy(durations, 0, sampleDurations, sampleOffsets[i], durations.length);
+            }
+        }
+        return sampleDurations;
+    }
+
+    @Override
+    public long getDuration() {
+        long duration = 0;
+        for (Track track : tracks) {
+            duration += track.getDuration();
+        }
+        return duration;
+    }
+
+    @Override
+    public synchronized long[] getSyncSamples() {
+        if (!syncSamplesComputed) {
+            syncSamplesComputed = true;
+            boolean any = false;
+            int count = 0;
+            for (int i = 0; i < tracks.length; i++) {
+                long[] sync = tracks[i].getSyncSamples();
+                if (sync != null) {
+                    any = true;
+                    count += sync.length;
+                } else {
+                    // every sample of a track without a sync sample table is a sync sample
+                    count += sampleOffsets[i + 1] - sampleOffsets[i];
+                }
+            }
+            if (any) {
+                syncSamples = new long[count];
+                int position = 0;
+                for (int i = 0; i < tracks.length; i++) {
+                    long[] sync = tracks[i].getSyncSamples();
+                    if (sync != null) {
+                        for (long sample : sync) {
+                            syncSamples[position++] = sampleOffsets[i] + sample;
+                        }
+                    } else {
+                        for (int sample = sampleOffsets[i]; sample < sampleOffsets[i + 1]; sample++) {
+                            syncSamples[position++] = sample + 1;
+                        }
+                    }
+                }
+            }
+        }
+        return syncSamples;
+    }
+
+    @Override
+    public synchronized List<CompositionTimeToSample.Entry> getCompositionTimeEntries() {
+        if (compositionTimeEntries == null) {
+            boolean any = false;
+            for (Track track : tracks) {
+                List<CompositionTimeToSample.Entry> entries = track.getCompositionTimeEntries();
+                any |= entries != null && !entries.isEmpty();
+            }
+            compositionTimeEntries = new ArrayList<>();
+            if (any) {
+                for (int i = 0; i < tracks.length; i++) {
+                    List<CompositionTimeToSample.Entry> entries = tracks[i].getCompositionTimeEntries();
+                    if (entries != null && !entries.isEmpty()) {
+                        for (CompositionTimeToSample.Entry entry : entries) {
+                            addCompositionTimeEntry(entry.getCount(), entry.getOffset());
+                        }
+                    } else {
+                        addCompositionTimeEntry(sampleOffsets[i + 1] - sampleOffsets[i], 0);
+                    }
+                }
+            }
+        }
+        return compositionTimeEntries;
+    }
+
+    private void addCompositionTimeEntry(int count, int offset) {
+        if (count == 0) {
+            return;
+        }
+        if (!compositionTimeEntries.isEmpty()) {
+            CompositionTimeToSample.Entry last = compositionTimeEntries.get(compositionTimeEntries.size() - 1);
+            if (last.getOffset() == offset) {
+                last.setCount(last.getCount() + count);
+                return;
+            }
+        }
+        compositionTimeEntries.add(new CompositionTimeToSample.Entry(count, offset));
+    }
+
+    @Override
+    public synchronized List<SampleDependencyTypeBox.Entry> getSampleDependencies() {
+        if (!sampleDependenciesComputed) {
+            sampleDependenciesComputed = true;
+            // the entries are per sample, so they are only kept if every track has them
+            List<SampleDependencyTypeBox.Entry> dependencies = new ArrayList<>();
+            for (Track track : tracks) {
+                List<SampleDependencyTypeBox.Entry> trackDependencies = track.getSampleDependencies();
+                if (trackDependencies == null || trackDependencies.isEmpty()) {
+                    return null;
+                }
+                dependencies.addAll(trackDependencies);
+            }
+            sampleDependencies = dependencies;
+        }
+        return sampleDependencies;
+    }
+
+    @Override
+    public TrackMetaData getTrackMetaData() {
+        return tracks[0].getTrackMetaData();
+    }
+
+    @Override
+    public String getHandler() {
+        return tracks[0].getHandler();
+    }
+
+    @Override
+    public SubSampleInformationBox getSubsampleInformationBox() {
+        return tracks[0].getSubsampleInformationBox();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Track track : tracks) {
+            track.close();
+        }
+    }
+
+    private class SampleList extends AbstractList<Sample> implements RandomAccess {
+
+        @Override
+        public Sample get(int index) {
+            int segment = segmentOf(index);
+            return samples[segment].get(index - sampleOffsets[segment]);
+        }
+
+        @Override
+        public int size() {
+            return sampleOffsets[tracks.length];
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mp4parser.muxer.Movie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import hu.agocs.rxmp4parser.io.FileChannelSource;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+
+public class CloseInputsTest {
+
+    private File input;
+    private int openCount;
+
+    @Before
+    public void setUp() throws IOException {
+        input = TestMovies.write(TestMovies.create(4));
+        openCount = FileChannelSource.getOpenCount();
+    }
+
+    @Test
+    public void cropIntoClosesTheInput() throws IOException {
+        List<TimeRange> ranges = Arrays.asList(new TimeRange(0, 1), new TimeRange(2, 3));
+        RxMp4Parser.cropInto(input, ranges, new Func1<TimeRange, File>() {
+            @Override
+            public File call(TimeRange range) {
+                return tempFile();
+            }
+        }, Schedulers.io()).toList().toBlocking().single();
+
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+
+    @Test
+    public void segmentClosesTheInput() {
+        List<File> segments = RxMp4Parser.segment(input, 1, new Func1<Integer, File>() {
+            @Override
+            public File call(Integer index) {
+                return tempFile();
+            }
+        }).toList().toBlocking().single();
+
+        assertEquals(4, segments.size());
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+
+    @Test
+    public void renderClosesTheSources() throws IOException {
+        List<EditSegment> segments = Arrays.asList(new EditSegment(input, 0, 1), new EditSegment(input, 2, 3));
+        RxMp4Parser.render(segments, tempFile()).toBlocking().single();
+
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+
+    @Test
+    public void concatenateFilesIntoClosesTheInputs() throws IOException {
+        File second = TestMovies.write(TestMovies.create(2));
+        RxMp4Parser.concatenateFilesInto(Arrays.asList(input, second), tempFile(), Schedulers.io(), 2)
+                .toBlocking().single();
+
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+
+    @Test
+    public void failedParseClosesTheInput() throws IOException {
+        // a truncated file without its moov box
+        File truncated = tempFile();
+        RandomAccessFile file = new RandomAccessFile(truncated, "rw");
+        try {
+            file.write(Files.readAllBytes(input.toPath()), 0, 64);
+        } finally {
+            file.close();
+        }
+
+        RxMp4Parser.setLogger(Logger.NONE);
+        try {
+            TestSubscriber<Movie> subscriber = new TestSubscriber<>();
+            RxMp4Parser.from(truncated).subscribe(subscriber);
+            assertEquals(1, subscriber.getOnErrorEvents().size());
+
+            TestSubscriber<File> cropSubscriber = new TestSubscriber<>();
+            RxMp4Parser.cropInto(truncated, Arrays.asList(new TimeRange(0, 1)), new Func1<TimeRange, File>() {
+                @Override
+                public File call(TimeRange range) {
+                    return tempFile();
+                }
+            }).subscribe(cropSubscriber);
+            assertEquals(1, cropSubscriber.getOnErrorEvents().size());
+        } finally {
+            RxMp4Parser.setLogger(Logger.SYSTEM_ERR);
+        }
+
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+
+    private static File tempFile() {
+        try {
+            File file = File.createTempFile("rxmp4parser", ".mp4");
+            file.deleteOnExit();
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.Test;
+import org.mp4parser.muxer.Movie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConcatenateTest {
+
+    @Test
+    public void appendsEveryTrack() {
+        Movie first = TestMovies.create(2);
+        Movie second = TestMovies.create(3);
+
+        Movie movie = RxMp4Parser.concatenate(Arrays.asList(Observable.just(first), Observable.just(second)))
+                .toBlocking().single();
+
+        assertEquals(2, movie.getTracks().size());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(first.getTracks().get(i).getHandler(), movie.getTracks().get(i).getHandler());
+            assertEquals(first.getTracks().get(i).getSamples().size() + second.getTracks().get(i).getSamples().size(),
+                    movie.getTracks().get(i).getSamples().size());
+        }
+    }
+
+    @Test
+    public void leavesOutTracksMissingFromAnInput() {
+        Movie videoOnly = Utils.mux(TestMovies.create(2).getTracks().get(0));
+        Movie both = TestMovies.create(2);
+
+        final List<String> messages = new ArrayList<>();
+        RxMp4Parser.setLogger(new Logger() {
+            @Override
+            public void error(String tag, String message) {
+                messages.add(message);
+            }
+        });
+        Movie movie;
+        try {
+            movie = RxMp4Parser.concatenate(Arrays.asList(Observable.just(videoOnly), Observable.just(both)))
+                    .toBlocking().single();
+        } finally {
+            RxMp4Parser.setLogger(Logger.SYSTEM_ERR);
+        }
+
+        assertEquals(1, movie.getTracks().size());
+        assertEquals(Constants.VIDEO_TRACK, movie.getTracks().get(0).getHandler());
+        assertEquals(videoOnly.getTracks().get(0).getSamples().size() + both.getTracks().get(0).getSamples().size(),
+                movie.getTracks().get(0).getSamples().size());
+        assertEquals(Collections.singletonList("Input 0 has no soun#0 track, the soun#0 tracks are left out."), messages);
+    }
+
+    @Test
+    public void failsWithoutCommonTracks() {
+        Movie videoOnly = Utils.mux(TestMovies.create(2).getTracks().get(0));
+        Movie audioOnly = Utils.mux(TestMovies.create(2).getTracks().get(1));
+
+        TestSubscriber<Movie> subscriber = new TestSubscriber<>();
+        RxMp4Parser.setLogger(Logger.NONE);
+        try {
+            RxMp4Parser.concatenate(Arrays.asList(Observable.just(videoOnly), Observable.just(audioOnly))).subscribe(subscriber);
+        } finally {
+            RxMp4Parser.setLogger(Logger.SYSTEM_ERR);
+        }
+
+        subscriber.assertNoValues();
+        assertEquals(1, subscriber.getOnErrorEvents().size());
+        assertEquals("The inputs have no track in common.", subscriber.getOnErrorEvents().get(0).getMessage());
+    }
+}
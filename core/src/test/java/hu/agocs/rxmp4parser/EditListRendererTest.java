@@ -0,0 +1,58 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.Test;
+import org.mp4parser.muxer.Movie;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import hu.agocs.rxmp4parser.io.FileChannelSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EditListRendererTest {
+
+    @Test
+    public void rendersEveryTrack() throws IOException {
+        File first = TestMovies.write(TestMovies.create(4));
+        File second = TestMovies.write(TestMovies.create(4));
+        List<MovieHandle> handles = new ArrayList<>();
+        try {
+            Movie movie = EditListRenderer.render(Arrays.asList(new EditSegment(first, 0, 2), new EditSegment(second, 1, 3)), handles);
+
+            assertEquals(2, movie.getTracks().size());
+            assertTrue(movie.getTracks().get(0).getSamples().size() >= 100);
+            assertTrue(movie.getTracks().get(1).getSamples().size() > 0);
+        } finally {
+            close(handles);
+        }
+    }
+
+    @Test
+    public void failsOnASourceWithoutAudio() throws IOException {
+        File both = TestMovies.write(TestMovies.create(4));
+        File videoOnly = TestMovies.write(Utils.mux(TestMovies.create(4).getTracks().get(0)));
+        int openCount = FileChannelSource.getOpenCount();
+        List<MovieHandle> handles = new ArrayList<>();
+        try {
+            EditListRenderer.render(Arrays.asList(new EditSegment(both, 0, 2), new EditSegment(videoOnly, 0, 2)), handles);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Segment 1 (" + videoOnly + ") has no soun#0 track"));
+        } finally {
+            close(handles);
+        }
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+
+    private static void close(List<MovieHandle> handles) throws IOException {
+        for (MovieHandle handle : handles) {
+            handle.close();
+        }
+    }
+}
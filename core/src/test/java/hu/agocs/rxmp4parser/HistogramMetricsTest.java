@@ -0,0 +1,136 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramMetricsTest {
+
+    @Test
+    public void reportsEveryStageOfACropAndAConcatenation() throws IOException {
+        File input = TestMovies.write(TestMovies.create(4));
+        final File directory = Files.createTempDirectory("rxmp4parser").toFile();
+        File output = new File(directory, "joined.mp4");
+        List<TimeRange> ranges = Arrays.asList(new TimeRange(0, 2), new TimeRange(2, 4));
+        HistogramMetrics metrics = new HistogramMetrics();
+
+        RxMp4Parser.setMetrics(metrics);
+        List<File> clips;
+        try {
+            clips = RxMp4Parser.cropInto(input, ranges, new Func1<TimeRange, File>() {
+                @Override
+                public File call(TimeRange range) {
+                    return new File(directory, (int) range.getFrom() + ".mp4");
+                }
+            }).toList().toBlocking().single();
+            RxMp4Parser.concatenateFilesInto(clips, output, Schedulers.immediate(), 1).toBlocking().single();
+        } finally {
+            RxMp4Parser.setMetrics(Mp4Metrics.NONE);
+        }
+
+        try {
+            long inputSamples = Utils.getSampleCount(TestMovies.create(4).getTracks());
+            // the input once for the crop, then both clips for the concatenation
+            HistogramMetrics.Stage parse = metrics.get(Mp4Metrics.PARSE);
+            assertEquals(3, parse.getCount());
+            assertEquals(inputSamples * 2, parse.getSampleCount());
+            assertTrue(parse.getByteCount() > 0);
+
+            HistogramMetrics.Stage index = metrics.get(Mp4Metrics.INDEX);
+            assertEquals(1, index.getCount());
+            assertEquals(inputSamples, index.getSampleCount());
+
+            // both clips start on a sync sample and together hold every sample once
+            HistogramMetrics.Stage crop = metrics.get(Mp4Metrics.CROP);
+            assertEquals(2, crop.getCount());
+            assertEquals(inputSamples, crop.getSampleCount());
+
+            HistogramMetrics.Stage append = metrics.get(Mp4Metrics.APPEND);
+            assertEquals(2, append.getCount());
+            assertEquals(inputSamples, append.getSampleCount());
+
+            HistogramMetrics.Stage mux = metrics.get(Mp4Metrics.MUX);
+            assertEquals(1, mux.getCount());
+            assertEquals(inputSamples, mux.getSampleCount());
+
+            HistogramMetrics.Stage build = metrics.get(Mp4Metrics.BUILD);
+            assertEquals(3, build.getCount());
+            assertEquals(inputSamples * 2, build.getSampleCount());
+
+            HistogramMetrics.Stage write = metrics.get(Mp4Metrics.WRITE);
+            assertEquals(3, write.getCount());
+            assertEquals(clips.get(0).length() + clips.get(1).length() + output.length(), write.getByteCount());
+
+            for (HistogramMetrics.Stage stage : metrics.getStages()) {
+                assertTrue(stage.getName(), stage.getMinNanos() > 0);
+                assertTrue(stage.getName(), stage.getMinNanos() <= stage.getMeanNanos());
+                assertTrue(stage.getName(), stage.getMeanNanos() <= stage.getMaxNanos());
+                assertEquals(stage.getName(), stage.getCount(), sum(stage.getBuckets()));
+            }
+        } finally {
+            for (File clip : clips) {
+                clip.delete();
+            }
+            output.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void bucketsDurationsByPowersOfTwoMicroseconds() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        metrics.onStage(Mp4Metrics.WRITE, 1000, 10, 100);
+        metrics.onStage(Mp4Metrics.WRITE, 3000, -1, -1);
+        metrics.onStage(Mp4Metrics.WRITE, 3500, 5, -1);
+        metrics.onStage(Mp4Metrics.WRITE, 1000000, -1, 50);
+
+        HistogramMetrics.Stage write = metrics.get(Mp4Metrics.WRITE);
+        long[] expected = new long[32];
+        expected[0] = 1;
+        expected[1] = 2;
+        expected[9] = 1;
+        assertArrayEquals(expected, write.getBuckets());
+        assertEquals(4, write.getCount());
+        assertEquals(1000, write.getMinNanos());
+        assertEquals(1000000, write.getMaxNanos());
+        assertEquals(1007500 / 4, write.getMeanNanos());
+        assertEquals(15, write.getSampleCount());
+        assertEquals(150, write.getByteCount());
+
+        // the upper bound of the bucket, but never more than the longest duration
+        assertEquals(2000, write.getPercentileNanos(0));
+        assertEquals(2000, write.getPercentileNanos(25));
+        assertEquals(4000, write.getPercentileNanos(50));
+        assertEquals(4000, write.getPercentileNanos(75));
+        assertEquals(1000000, write.getPercentileNanos(99));
+        assertEquals(1000000, write.getPercentileNanos(100));
+
+        // durations longer than the last bucket stay in it
+        metrics.onStage(Mp4Metrics.BUILD, Long.MAX_VALUE / 2, -1, -1);
+        assertEquals(1, metrics.get(Mp4Metrics.BUILD).getBuckets()[31]);
+
+        assertNull(metrics.get(Mp4Metrics.PARSE));
+        metrics.reset();
+        assertTrue(metrics.getStages().isEmpty());
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,171 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mp4parser.muxer.Movie;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class KeyframeIndexTest {
+
+    // an old modification time, so a sidecar which has been written again is easy to tell apart
+    private static final long OLD = 1000000000000L;
+
+    private File source;
+    private File sidecar;
+
+    @Before
+    public void setUp() throws IOException {
+        source = TestMovies.write(TestMovies.create(4));
+        sidecar = KeyframeIndex.sidecarFile(source);
+        sidecar.deleteOnExit();
+    }
+
+    @Test
+    public void loadsTheSidecarItWrote() throws IOException {
+        KeyframeIndex built = KeyframeIndex.of(source);
+        assertTrue(sidecar.isFile());
+        assertTrue(sidecar.setLastModified(OLD));
+
+        KeyframeIndex loaded = KeyframeIndex.of(source);
+
+        assertEquals(OLD, sidecar.lastModified());
+        assertSameTimelines(built.getTimelines(), loaded.getTimelines());
+        // the audio track has no stss box
+        assertNull(loaded.getTimelines().get(1).getSyncSamples());
+        assertEquals(4, loaded.getTimelines().get(0).getSyncSamples().length);
+    }
+
+    @Test
+    public void rebuildsAnotherVersion() throws IOException {
+        KeyframeIndex.of(source);
+        byte[] bytes = Files.readAllBytes(sidecar.toPath());
+        ByteBuffer.wrap(bytes).putInt(4, 2);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        ByteBuffer.wrap(bytes).putLong(bytes.length - 8, crc.getValue());
+        write(sidecar, bytes);
+
+        assertRebuilt();
+    }
+
+    @Test
+    public void rebuildsADamagedSidecar() throws IOException {
+        KeyframeIndex.of(source);
+        byte[] bytes = Files.readAllBytes(sidecar.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        write(sidecar, bytes);
+
+        assertRebuilt();
+    }
+
+    @Test
+    public void rebuildsATruncatedSidecar() throws IOException {
+        KeyframeIndex.of(source);
+        byte[] bytes = Files.readAllBytes(sidecar.toPath());
+        write(sidecar, Arrays.copyOf(bytes, bytes.length - 20));
+
+        assertRebuilt();
+    }
+
+    @Test
+    public void rebuildsWhenTheSourceWasModified() throws IOException {
+        KeyframeIndex.of(source);
+        assertTrue(source.setLastModified(source.lastModified() - 60000));
+
+        assertRebuilt();
+    }
+
+    @Test
+    public void rebuildsWhenTheSourceSizeChanged() throws IOException {
+        KeyframeIndex.of(source);
+        long lastModified = source.lastModified();
+        FileOutputStream fos = new FileOutputStream(source, true);
+        try {
+            // an empty free box at the end
+            fos.write(new byte[]{0, 0, 0, 8, 'f', 'r', 'e', 'e'});
+        } finally {
+            fos.close();
+        }
+        assertTrue(source.setLastModified(lastModified));
+
+        assertRebuilt();
+    }
+
+    @Test
+    public void writesTheSidecarWhereItIsToldTo() throws IOException {
+        File directory = Files.createTempDirectory("rxmp4parser").toFile();
+        File elsewhere = KeyframeIndex.sidecarFile(source, directory);
+        try {
+            KeyframeIndex.of(source, elsewhere);
+            assertTrue(elsewhere.isFile());
+            assertFalse(sidecar.exists());
+
+            KeyframeIndex.of(source, null);
+            assertFalse(sidecar.exists());
+        } finally {
+            elsewhere.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void fallsBackToTheTracksOfAnotherMovie() throws IOException {
+        KeyframeIndex index = KeyframeIndex.of(source);
+        Movie other = TestMovies.create(2);
+
+        assertFalse(index.matches(other));
+        MovieClipper clipper = index.clipper(other);
+        assertNotSame(index.getTimelines().get(0), clipper.getTimelines().get(0));
+        assertEquals(50, clipper.getTimelines().get(0).getSampleCount());
+
+        Movie same = TestMovies.create(4);
+        assertTrue(index.matches(same));
+        assertSame(index.getTimelines().get(0), index.clipper(same).getTimelines().get(0));
+    }
+
+    private void assertRebuilt() throws IOException {
+        assertTrue(sidecar.setLastModified(OLD));
+        KeyframeIndex index = KeyframeIndex.of(source);
+
+        assertTrue(sidecar.lastModified() != OLD);
+        assertSameTimelines(new MovieClipper(TestMovies.create(4)).getTimelines(), index.getTimelines());
+        // and the rewritten one is loaded again
+        assertTrue(sidecar.setLastModified(OLD));
+        KeyframeIndex.of(source);
+        assertEquals(OLD, sidecar.lastModified());
+    }
+
+    private static void assertSameTimelines(List<SampleTimeline> expected, List<SampleTimeline> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimescale(), actual.get(i).getTimescale());
+            assertArrayEquals(expected.get(i).getDecodingTimes(), actual.get(i).getDecodingTimes());
+            assertArrayEquals(expected.get(i).getSyncSamples(), actual.get(i).getSyncSamples());
+        }
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(bytes);
+        } finally {
+            fos.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.Test;
+import org.mp4parser.muxer.Movie;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import hu.agocs.rxmp4parser.io.FileChannelSource;
+import rx.Observable;
+import rx.functions.Func1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MovieCacheTest {
+
+    @Test
+    public void closesEvictedEntriesOnceReleased() throws Exception {
+        File first = TestMovies.write(TestMovies.create(1));
+        File second = TestMovies.write(TestMovies.create(1));
+        int openCount = FileChannelSource.getOpenCount();
+        MovieCache cache = new MovieCache(1, Long.MAX_VALUE);
+
+        Movie movie = cache.get(first);
+        cache.get(second);
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(openCount + 2, FileChannelSource.getOpenCount());
+
+        cache.release(movie);
+        assertEquals(openCount + 1, FileChannelSource.getOpenCount());
+
+        cache.clear();
+        assertEquals(openCount + 1, FileChannelSource.getOpenCount());
+        cache.release(movie);
+        assertEquals(openCount + 1, FileChannelSource.getOpenCount());
+    }
+
+    @Test
+    public void closesInvalidatedEntries() throws Exception {
+        File file = TestMovies.write(TestMovies.create(1));
+        int openCount = FileChannelSource.getOpenCount();
+        MovieCache cache = new MovieCache(4, Long.MAX_VALUE);
+
+        cache.release(cache.get(file));
+        assertEquals(openCount + 1, FileChannelSource.getOpenCount());
+
+        cache.invalidate(file);
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+
+    @Test
+    public void parsesConcurrentMissesOnce() throws Exception {
+        final File file = TestMovies.write(TestMovies.create(5));
+        int openCount = FileChannelSource.getOpenCount();
+        final MovieCache cache = new MovieCache(4, Long.MAX_VALUE);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Movie>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(new Callable<Movie>() {
+                @Override
+                public Movie call() throws Exception {
+                    return cache.get(file);
+                }
+            }));
+        }
+        List<Movie> movies = new ArrayList<>();
+        for (Future<Movie> future : futures) {
+            movies.add(future.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(7, cache.getHitCount());
+        assertEquals(openCount + 1, FileChannelSource.getOpenCount());
+        for (Movie movie : movies) {
+            assertSame(movies.get(0).getTracks().get(0), movie.getTracks().get(0));
+            cache.release(movie);
+        }
+        cache.clear();
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+
+    @Test
+    public void withMovieClosesAnEntryEvictedWhileInUse() throws Exception {
+        File first = TestMovies.write(TestMovies.create(1));
+        final File second = TestMovies.write(TestMovies.create(1));
+        final int openCount = FileChannelSource.getOpenCount();
+        final MovieCache cache = new MovieCache(1, Long.MAX_VALUE);
+
+        RxMp4Parser.withMovie(first, cache, new Func1<Movie, Observable<Integer>>() {
+            @Override
+            public Observable<Integer> call(Movie movie) {
+                try {
+                    cache.release(cache.get(second));
+                } catch (IOException e) {
+                    return Observable.error(e);
+                }
+                // the first entry has been evicted, but it stays open while it is in use
+                assertEquals(1, cache.getEvictionCount());
+                assertEquals(openCount + 2, FileChannelSource.getOpenCount());
+                return Observable.just(movie.getTracks().size());
+            }
+        }).toBlocking().single();
+
+        assertEquals(openCount + 1, FileChannelSource.getOpenCount());
+        cache.clear();
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+
+    @Test
+    public void withMovieReleasesToTheCache() throws Exception {
+        File file = TestMovies.write(TestMovies.create(1));
+        int openCount = FileChannelSource.getOpenCount();
+        MovieCache cache = new MovieCache(4, Long.MAX_VALUE);
+
+        int trackCount = RxMp4Parser.withMovie(file, cache, new Func1<Movie, Observable<Integer>>() {
+            @Override
+            public Observable<Integer> call(Movie movie) {
+                return Observable.just(movie.getTracks().size());
+            }
+        }).toBlocking().single();
+        assertEquals(2, trackCount);
+
+        cache.clear();
+        assertEquals(openCount, FileChannelSource.getOpenCount());
+    }
+}
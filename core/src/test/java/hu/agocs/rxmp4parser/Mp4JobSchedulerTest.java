@@ -0,0 +1,160 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Mp4JobSchedulerTest {
+
+    private final Mp4JobScheduler scheduler = new Mp4JobScheduler(2, 1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void startsHigherPrioritiesFirst() throws InterruptedException {
+        Mp4JobScheduler single = new Mp4JobScheduler(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        TestSubscriber<String> blocker = new TestSubscriber<>();
+        single.parse(blocking("blocker", started, null), Mp4JobScheduler.Priority.NORMAL).subscribe(blocker);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        List<TestSubscriber<String>> subscribers = new ArrayList<>();
+        String[] names = {"low", "normal-1", "high-1", "high-2", "normal-2"};
+        Mp4JobScheduler.Priority[] priorities = {Mp4JobScheduler.Priority.LOW, Mp4JobScheduler.Priority.NORMAL,
+                Mp4JobScheduler.Priority.HIGH, Mp4JobScheduler.Priority.HIGH, Mp4JobScheduler.Priority.NORMAL};
+        for (int i = 0; i < names.length; i++) {
+            TestSubscriber<String> subscriber = new TestSubscriber<>();
+            single.parse(recording(names[i], order), priorities[i]).subscribe(subscriber);
+            subscribers.add(subscriber);
+        }
+        assertEquals(5, single.getParsers().getQueueDepth());
+
+        release.countDown();
+        for (TestSubscriber<String> subscriber : subscribers) {
+            subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+            subscriber.assertCompleted();
+        }
+        assertEquals(Arrays.asList("high-1", "high-2", "normal-1", "normal-2", "low"), order);
+        single.shutdown();
+    }
+
+    @Test
+    public void limitsParsersAndWritersSeparately() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(3);
+        AtomicInteger parsing = new AtomicInteger();
+        AtomicInteger writing = new AtomicInteger();
+        List<TestSubscriber<String>> subscribers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            TestSubscriber<String> subscriber = new TestSubscriber<>();
+            scheduler.parse(blocking("parse", started, parsing), Mp4JobScheduler.Priority.NORMAL).subscribe(subscriber);
+            subscribers.add(subscriber);
+        }
+        for (int i = 0; i < 3; i++) {
+            TestSubscriber<String> subscriber = new TestSubscriber<>();
+            scheduler.write(blocking("write", started, writing), Mp4JobScheduler.Priority.NORMAL).subscribe(subscriber);
+            subscribers.add(subscriber);
+        }
+
+        // two parsers and one writer start, the rest waits for them
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, scheduler.getParsers().getRunning());
+        assertEquals(2, scheduler.getParsers().getQueueDepth());
+        assertEquals(1, scheduler.getWriters().getRunning());
+        assertEquals(2, scheduler.getWriters().getQueueDepth());
+        assertEquals(2, parsing.get());
+        assertEquals(1, writing.get());
+
+        release.countDown();
+        for (TestSubscriber<String> subscriber : subscribers) {
+            subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+            subscriber.assertCompleted();
+        }
+        assertEquals(4, scheduler.getParsers().getStarted());
+        assertEquals(3, scheduler.getWriters().getStarted());
+    }
+
+    @Test
+    public void removesJobsUnsubscribedWhileQueued() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(2);
+        TestSubscriber<String> first = new TestSubscriber<>();
+        TestSubscriber<String> second = new TestSubscriber<>();
+        scheduler.parse(blocking("first", started, null), Mp4JobScheduler.Priority.NORMAL).subscribe(first);
+        scheduler.parse(blocking("second", started, null), Mp4JobScheduler.Priority.NORMAL).subscribe(second);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final AtomicBoolean subscribed = new AtomicBoolean();
+        Subscription queued = scheduler.parse(Observable.create(new Observable.OnSubscribe<String>() {
+            @Override
+            public void call(Subscriber<? super String> subscriber) {
+                subscribed.set(true);
+                subscriber.onCompleted();
+            }
+        }), Mp4JobScheduler.Priority.HIGH).subscribe(new TestSubscriber<String>());
+        assertEquals(1, scheduler.getParsers().getQueueDepth());
+
+        queued.unsubscribe();
+        assertEquals(0, scheduler.getParsers().getQueueDepth());
+        assertEquals(1, scheduler.getParsers().getCancelled());
+
+        release.countDown();
+        first.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        second.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        assertFalse(subscribed.get());
+        assertEquals(2, scheduler.getParsers().getStarted());
+    }
+
+    // a job which holds its slot until the test releases it
+    private Observable<String> blocking(final String name, final CountDownLatch started, final AtomicInteger running) {
+        return Observable.create(new Observable.OnSubscribe<String>() {
+            @Override
+            public void call(Subscriber<? super String> subscriber) {
+                if (running != null) {
+                    running.incrementAndGet();
+                }
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    subscriber.onError(e);
+                    return;
+                }
+                subscriber.onNext(name);
+                subscriber.onCompleted();
+            }
+        });
+    }
+
+    private static Observable<String> recording(final String name, final List<String> order) {
+        return Observable.create(new Observable.OnSubscribe<String>() {
+            @Override
+            public void call(Subscriber<? super String> subscriber) {
+                order.add(name);
+                subscriber.onNext(name);
+                subscriber.onCompleted();
+            }
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Subscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MuxProgressTest {
+
+    @Test
+    public void reportsOnlyBytesWhichReachedTheFile() throws IOException {
+        final File directory = Files.createTempDirectory("rxmp4parser").toFile();
+        File outputFile = new File(directory, "output.mp4");
+        final List<MuxProgress> events = new ArrayList<>();
+        final List<Long> fileSizes = new ArrayList<>();
+
+        // subscribed on this thread, so every event is checked against the file while it is written
+        RxMp4Parser.outputWithProgress(TestMovies.create(30), outputFile, 0).subscribe(new Subscriber<MuxProgress>() {
+            @Override
+            public void onNext(MuxProgress progress) {
+                events.add(progress);
+                fileSizes.add(partFileSize(directory));
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        try {
+            assertTrue(events.size() > 2);
+            for (int i = 0; i < events.size() - 1; i++) {
+                assertEquals("event " + i, fileSizes.get(i).longValue(), events.get(i).getBytesWritten());
+            }
+            MuxProgress last = events.get(events.size() - 1);
+            assertTrue(last.isDone());
+            assertEquals(outputFile.length(), last.getBytesWritten());
+            assertEquals(outputFile.length(), last.getTotalBytes());
+        } finally {
+            outputFile.delete();
+            directory.delete();
+        }
+    }
+
+    // the output is written into a temporary file next to it and renamed when it is complete
+    private static long partFileSize(File directory) {
+        File[] files = directory.listFiles();
+        return files != null && files.length == 1 && files[0].getName().endsWith(".part") ? files[0].length() : -1;
+    }
+}
@@ -0,0 +1,59 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.Test;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.muxer.builder.FragmentedMp4Builder;
+import org.mp4parser.muxer.builder.TimeBasedFragmenter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProbeTracksTest {
+
+    @Test
+    public void describesTheTracksOfAFile() throws IOException {
+        Movie original = TestMovies.create(4);
+        File file = TestMovies.write(original);
+
+        List<TrackInfo> tracks = RxMp4Parser.probeTracks(file).toBlocking().single();
+
+        assertEquals(2, tracks.size());
+        assertEquals("avc1", tracks.get(0).getCodec());
+        assertEquals("mp4a", tracks.get(1).getCodec());
+        for (int i = 0; i < tracks.size(); i++) {
+            Track track = original.getTracks().get(i);
+            TrackInfo info = tracks.get(i);
+            assertFalse(info.isFragmented());
+            assertEquals(track.getHandler(), info.getHandler());
+            assertEquals(track.getSamples().size(), info.getSampleCount());
+            assertEquals(track.getDuration(), info.getDuration());
+        }
+    }
+
+    @Test
+    public void reportsUnknownDurationsForFragmentedFiles() throws IOException {
+        Movie original = TestMovies.create(4);
+        FragmentedMp4Builder builder = new FragmentedMp4Builder();
+        builder.setFragmenter(new TimeBasedFragmenter(1));
+        File file = TestMovies.write(builder.build(original));
+
+        List<TrackInfo> tracks = RxMp4Parser.probeTracks(file).toBlocking().single();
+
+        assertEquals(2, tracks.size());
+        for (int i = 0; i < tracks.size(); i++) {
+            TrackInfo info = tracks.get(i);
+            assertTrue(info.isFragmented());
+            assertEquals(original.getTracks().get(i).getHandler(), info.getHandler());
+            assertEquals(TrackInfo.UNKNOWN, info.getDuration());
+            assertEquals(TrackInfo.UNKNOWN, info.getSampleCount());
+            assertEquals(TrackInfo.UNKNOWN, info.getDurationInSeconds(), 0);
+        }
+        assertEquals("avc1", tracks.get(0).getCodec());
+    }
+}
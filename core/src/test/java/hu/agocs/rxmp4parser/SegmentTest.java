@@ -0,0 +1,145 @@
+package hu.agocs.rxmp4parser;
+
+import org.junit.Test;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import hu.agocs.rxmp4parser.io.FileChannelSource;
+import hu.agocs.rxmp4parser.io.MovieReader;
+import rx.functions.Func1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentTest {
+
+    @Test
+    public void segmentsAreContiguousAndStartOnSyncSamples() {
+        MovieClipper clipper = new MovieClipper(TestMovies.create(10));
+
+        List<TimeRange> ranges = clipper.segments(3);
+
+        assertContiguous(ranges, duration(clipper));
+        // the sync samples are one second apart, so every cut lands on a whole second
+        for (TimeRange range : ranges) {
+            assertEquals(Math.rint(range.getFrom()), range.getFrom(), 1e-9);
+        }
+        assertEquals(4, ranges.size());
+        assertEquals(9, ranges.get(3).getFrom(), 1e-9);
+    }
+
+    @Test
+    public void segmentsWithoutSyncSamplesAreContiguous() {
+        Movie audioOnly = Utils.mux(TestMovies.create(10).getTracks().get(1));
+        MovieClipper clipper = new MovieClipper(audioOnly);
+        List<TimeRange> ranges = clipper.segments(3);
+
+        assertContiguous(ranges, duration(clipper));
+        assertEquals(4, ranges.size());
+        assertEquals(audioOnly.getTracks().get(0).getSamples().size(), countSamples(clipper, ranges));
+    }
+
+    @Test
+    public void lastSegmentEndsWithTheLongestTrack() {
+        MovieClipper clipper = new MovieClipper(TestMovies.create(10));
+
+        // a target reaching the end of the movie leaves a single segment, never an empty last one
+        List<TimeRange> whole = clipper.segments(10);
+        assertEquals(1, whole.size());
+        assertContiguous(whole, duration(clipper));
+        assertContiguous(clipper.segments(60), duration(clipper));
+
+        List<TimeRange> halves = clipper.segments(5);
+        assertEquals(2, halves.size());
+        assertContiguous(halves, duration(clipper));
+
+        // a cut ending at or after the duration keeps the last sample of every track
+        Movie tail = clipper.cut(9, 100);
+        for (int i = 0; i < tail.getTracks().size(); i++) {
+            List<Sample> samples = clipper.getMovie().getTracks().get(i).getSamples();
+            List<Sample> tailSamples = tail.getTracks().get(i).getSamples();
+            assertEquals(samples.get(samples.size() - 1).asByteBuffer(), tailSamples.get(tailSamples.size() - 1).asByteBuffer());
+        }
+    }
+
+    @Test
+    public void segmentFilesHoldEverySampleOnce() throws IOException {
+        Movie original = TestMovies.create(10);
+        File file = TestMovies.write(original);
+        final File directory = Files.createTempDirectory("rxmp4parser").toFile();
+
+        List<File> segments = RxMp4Parser.segment(file, 3, new Func1<Integer, File>() {
+            @Override
+            public File call(Integer index) {
+                return new File(directory, index + ".mp4");
+            }
+        }).toList().toBlocking().single();
+
+        assertEquals(4, segments.size());
+        List<List<Sample>> joined = new ArrayList<>();
+        for (int i = 0; i < original.getTracks().size(); i++) {
+            joined.add(new ArrayList<Sample>());
+        }
+        List<Movie> movies = new ArrayList<>();
+        try {
+            for (File segment : segments) {
+                Movie movie = MovieReader.read(segment, new FileChannelSource(segment));
+                movies.add(movie);
+                assertEquals(original.getTracks().size(), movie.getTracks().size());
+                for (int i = 0; i < movie.getTracks().size(); i++) {
+                    joined.get(i).addAll(movie.getTracks().get(i).getSamples());
+                }
+            }
+            for (int t = 0; t < original.getTracks().size(); t++) {
+                List<Sample> expected = original.getTracks().get(t).getSamples();
+                assertEquals("track " + t, expected.size(), joined.get(t).size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals("track " + t + " sample " + i, expected.get(i).asByteBuffer(), joined.get(t).get(i).asByteBuffer());
+                }
+            }
+        } finally {
+            for (Movie movie : movies) {
+                TestMovies.close(movie);
+            }
+            for (File segment : segments) {
+                segment.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private static double duration(MovieClipper clipper) {
+        double duration = 0;
+        for (SampleTimeline timeline : clipper.getTimelines()) {
+            duration = Math.max(duration, timeline.getDuration());
+        }
+        return duration;
+    }
+
+    private static void assertContiguous(List<TimeRange> ranges, double duration) {
+        assertFalse(ranges.isEmpty());
+        assertEquals(0, ranges.get(0).getFrom(), 1e-9);
+        for (int i = 0; i < ranges.size(); i++) {
+            assertTrue("segment " + i + " is empty", ranges.get(i).getTo() > ranges.get(i).getFrom());
+            if (i > 0) {
+                assertEquals("segment " + i, ranges.get(i - 1).getTo(), ranges.get(i).getFrom(), 0);
+            }
+        }
+        assertEquals(duration, ranges.get(ranges.size() - 1).getTo(), 1e-9);
+    }
+
+    private static long countSamples(MovieClipper clipper, List<TimeRange> ranges) {
+        long count = 0;
+        for (TimeRange range : ranges) {
+            count += Utils.getSampleCount(clipper.cut(range.getFrom(), range.getTo()).getTracks());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,61 @@
+package hu.agocs.rxmp4parser;
+
+import org.mp4parser.Container;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.Sample;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.muxer.builder.DefaultMp4Builder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import hu.agocs.rxmp4parser.fixtures.SyntheticMp4;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Small MP4 files for the tests: a {@link SyntheticMp4} with an avc1 video track with a sync sample
+ * every 25 samples at 25 fps and an mp4a audio track, both lasting about the given number of seconds.
+ */
+public class TestMovies {
+
+    public static Movie create(int seconds) {
+        return new SyntheticMp4(2, seconds * 25, 25, seconds).createMovie();
+    }
+
+    public static File write(Movie movie) throws IOException {
+        return write(new DefaultMp4Builder().build(movie));
+    }
+
+    public static File write(Container container) throws IOException {
+        File file = File.createTempFile("rxmp4parser-test-", ".mp4");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            container.writeContainer(fos.getChannel());
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    public static void assertSameSamples(Movie expected, Movie actual) {
+        assertEquals(expected.getTracks().size(), actual.getTracks().size());
+        for (int t = 0; t < expected.getTracks().size(); t++) {
+            List<Sample> expectedSamples = expected.getTracks().get(t).getSamples();
+            List<Sample> actualSamples = actual.getTracks().get(t).getSamples();
+            assertEquals(expectedSamples.size(), actualSamples.size());
+            for (int i = 0; i < expectedSamples.size(); i++) {
+                assertEquals("track " + t + " sample " + i, expectedSamples.get(i).asByteBuffer(), actualSamples.get(i).asByteBuffer());
+            }
+        }
+    }
+
+    public static void close(Movie movie) throws IOException {
+        for (Track track : movie.getTracks()) {
+            track.close();
+        }
+    }
+}
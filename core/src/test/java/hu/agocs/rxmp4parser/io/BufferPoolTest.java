@@ -0,0 +1,63 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    @Test
+    public void allocatesAtMostMaxBuffersDirectBuffers() {
+        BufferPool pool = new BufferPool(1024, 2);
+
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        ByteBuffer third = pool.acquire();
+
+        assertTrue(first.isDirect());
+        assertTrue(second.isDirect());
+        assertFalse(third.isDirect());
+        assertEquals(1024, third.capacity());
+        assertEquals(2, pool.getDirectCount());
+        assertEquals(2, pool.getAllocatedCount());
+        assertEquals(1, pool.getHeapCount());
+
+        pool.release(third);
+        pool.release(second);
+        pool.release(first);
+        assertEquals(2, pool.getPooledCount());
+        assertEquals(0, pool.getDiscardedCount());
+    }
+
+    @Test
+    public void reusesReleasedBuffers() {
+        BufferPool pool = new BufferPool(1024, 1);
+
+        ByteBuffer buffer = pool.acquire();
+        buffer.put((byte) 1);
+        pool.release(buffer);
+        ByteBuffer reused = pool.acquire();
+
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(1, pool.getAllocatedCount());
+        assertEquals(1, pool.getReusedCount());
+        assertEquals(0, pool.getHeapCount());
+    }
+
+    @Test
+    public void discardsBuffersOfOtherSizes() {
+        BufferPool pool = new BufferPool(1024, 1);
+
+        pool.release(ByteBuffer.allocateDirect(512));
+
+        assertEquals(0, pool.getPooledCount());
+        assertTrue(pool.acquire().isDirect());
+        assertEquals(1, pool.getAllocatedCount());
+    }
+}
@@ -0,0 +1,95 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.junit.Test;
+import org.mp4parser.IsoFile;
+import org.mp4parser.boxes.iso14496.part12.MediaHeaderBox;
+import org.mp4parser.boxes.iso14496.part12.MovieHeaderBox;
+import org.mp4parser.boxes.iso14496.part12.TrackHeaderBox;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.tools.Path;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import hu.agocs.rxmp4parser.TestMovies;
+import rx.subscriptions.Subscriptions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DemuxWriterTest {
+
+    @Test
+    public void mergedOutputsMatchTheOutputsWrittenOneAfterTheOther() throws IOException {
+        File file = TestMovies.write(TestMovies.create(6));
+        List<File> merged = Arrays.asList(createTempFile(), createTempFile());
+        List<File> separate = Arrays.asList(createTempFile(), createTempFile());
+
+        // every track from the same source takes the offset merge
+        Movie movie = read(file);
+        try {
+            DemuxWriter.write(movie, merged, Subscriptions.empty());
+        } finally {
+            TestMovies.close(movie);
+        }
+
+        // tracks from two sources are written with MovieWriter, one after the other
+        Movie first = read(file);
+        Movie second = read(file);
+        try {
+            Movie mixed = new Movie();
+            mixed.addTrack(first.getTracks().get(0));
+            mixed.addTrack(second.getTracks().get(1));
+            DemuxWriter.write(mixed, separate, Subscriptions.empty());
+        } finally {
+            TestMovies.close(first);
+            TestMovies.close(second);
+        }
+
+        for (int i = 0; i < merged.size(); i++) {
+            byte[] expected = Files.readAllBytes(separate.get(i).toPath());
+            byte[] actual = Files.readAllBytes(merged.get(i).toPath());
+            assertEquals("track " + i, expected.length, actual.length);
+            assertArrayEquals("track " + i, withoutTimes(separate.get(i)), withoutTimes(merged.get(i)));
+        }
+    }
+
+    private static Movie read(File file) throws IOException {
+        return MovieReader.read(file, new FileChannelSource(file));
+    }
+
+    private static File createTempFile() throws IOException {
+        File file = File.createTempFile("rxmp4parser-test-", ".mp4");
+        file.deleteOnExit();
+        return file;
+    }
+
+    // DefaultMp4Builder and every new TrackMetaData stamp the headers with the current time
+    private static byte[] withoutTimes(File file) throws IOException {
+        IsoFile isoFile = new IsoFile(file.getAbsolutePath());
+        try {
+            MovieHeaderBox mvhd = Path.getPath(isoFile, "moov[0]/mvhd[0]");
+            mvhd.setCreationTime(new Date(0));
+            mvhd.setModificationTime(new Date(0));
+            for (TrackHeaderBox tkhd : Path.<TrackHeaderBox>getPaths(isoFile, "moov[0]/trak/tkhd[0]")) {
+                tkhd.setCreationTime(new Date(0));
+                tkhd.setModificationTime(new Date(0));
+            }
+            for (MediaHeaderBox mdhd : Path.<MediaHeaderBox>getPaths(isoFile, "moov[0]/trak/mdia[0]/mdhd[0]")) {
+                mdhd.setCreationTime(new Date(0));
+                mdhd.setModificationTime(new Date(0));
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            isoFile.writeContainer(Channels.newChannel(bytes));
+            return bytes.toByteArray();
+        } finally {
+            isoFile.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package hu.agocs.rxmp4parser.io;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mp4parser.muxer.Movie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import hu.agocs.rxmp4parser.MovieHandle;
+import hu.agocs.rxmp4parser.RxMp4Parser;
+import hu.agocs.rxmp4parser.TestMovies;
+import rx.Observable;
+import rx.functions.Func1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpRangeDataSourceTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+
+    private Movie original;
+    private byte[] content;
+    private HttpServer server;
+    private URL url;
+
+    @Before
+    public void setUp() throws IOException {
+        original = TestMovies.create(10);
+        content = Files.readAllBytes(TestMovies.write(original).toPath());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/movie.mp4", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/movie.mp4");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void writesMovieReadThroughTheBlockCache() throws IOException {
+        final File output = File.createTempFile("rxmp4parser", ".mp4");
+        output.deleteOnExit();
+
+        RxMp4Parser.withMovie(url, new Func1<Movie, Observable<File>>() {
+            @Override
+            public Observable<File> call(Movie movie) {
+                return RxMp4Parser.output(movie, output);
+            }
+        }).toBlocking().single();
+
+        assertTrue(rangeRequests.get() > 0);
+        MovieHandle handle = new MovieHandle(output);
+        try {
+            TestMovies.assertSameSamples(original, handle.open());
+        } finally {
+            handle.close();
+        }
+    }
+
+    @Test
+    public void keepsTheCountersOfTheUrlCache() throws IOException {
+        final File output = File.createTempFile("rxmp4parser", ".mp4");
+        output.deleteOnExit();
+        BlockCacheDataSource source = BlockCacheDataSource.of(url);
+
+        RxMp4Parser.withMovie(source, new Func1<Movie, Observable<File>>() {
+            @Override
+            public Observable<File> call(Movie movie) {
+                return RxMp4Parser.output(movie, output);
+            }
+        }).toBlocking().single();
+
+        assertEquals(rangeRequests.get(), source.getSourceReadCount());
+        assertTrue(source.getHitCount() > 0);
+        assertTrue(source.getMissCount() > 0);
+        assertEquals(content.length, source.getSourceBytesRead());
+    }
+
+    @Test
+    public void readsRanges() throws IOException {
+        BlockCacheDataSource source = new BlockCacheDataSource(new HttpRangeDataSource(url), 1024, 4, 1);
+        try {
+            assertEquals(content.length, source.size());
+            byte[] bytes = new byte[3000];
+            source.get(500, bytes.length).get(bytes);
+            assertTrue(Arrays.equals(Arrays.copyOfRange(content, 500, 3500), bytes));
+            assertTrue(source.getSourceReadCount() > 0);
+        } finally {
+            source.close();
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            Matcher matcher = range != null ? RANGE.matcher(range) : null;
+            if (matcher == null || !matcher.matches()) {
+                exchange.sendResponseHeaders(200, content.length);
+                exchange.getResponseBody().write(content);
+                return;
+            }
+            rangeRequests.incrementAndGet();
+            int from = Integer.parseInt(matcher.group(1));
+            int to = Math.min(Integer.parseInt(matcher.group(2)), content.length - 1);
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + content.length);
+            exchange.sendResponseHeaders(206, to - from + 1);
+            OutputStream body = exchange.getResponseBody();
+            body.write(content, from, to - from + 1);
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.junit.Test;
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.builder.FragmentedMp4Builder;
+import org.mp4parser.muxer.builder.TimeBasedFragmenter;
+import org.mp4parser.muxer.container.mp4.MovieCreator;
+
+import java.io.File;
+
+import hu.agocs.rxmp4parser.TestMovies;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MovieReaderTest {
+
+    @Test
+    public void readsFragmentedFiles() throws Exception {
+        Movie original = TestMovies.create(10);
+        FragmentedMp4Builder builder = new FragmentedMp4Builder();
+        builder.setFragmenter(new TimeBasedFragmenter(2));
+        File file = TestMovies.write(builder.build(original));
+
+        Movie movie = read(file);
+        try {
+            assertFalse(movie.getTracks().get(0) instanceof SourceTrack);
+            TestMovies.assertSameSamples(original, movie);
+            TestMovies.assertSameSamples(MovieCreator.build(file.getAbsolutePath()), movie);
+        } finally {
+            TestMovies.close(movie);
+        }
+    }
+
+    @Test
+    public void readsNonFragmentedFiles() throws Exception {
+        Movie original = TestMovies.create(10);
+        File file = TestMovies.write(original);
+
+        Movie movie = read(file);
+        try {
+            assertTrue(movie.getTracks().get(0) instanceof SourceTrack);
+            TestMovies.assertSameSamples(original, movie);
+        } finally {
+            TestMovies.close(movie);
+        }
+    }
+
+    private static Movie read(File file) throws Exception {
+        return MovieReader.read(file, new FileChannelSource(file));
+    }
+}
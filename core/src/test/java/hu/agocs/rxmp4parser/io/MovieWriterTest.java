@@ -0,0 +1,54 @@
+package hu.agocs.rxmp4parser.io;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MovieWriterTest {
+
+    @Test
+    public void moveToReplacesTheOutput() throws IOException {
+        File output = write(File.createTempFile("rxmp4parser", ".mp4"), "old");
+        File temporaryFile = write(MovieWriter.createTemporaryFile(output), "new");
+
+        MovieWriter.moveTo(temporaryFile, output);
+
+        assertArrayEquals("new".getBytes("UTF-8"), Files.readAllBytes(output.toPath()));
+        assertFalse(temporaryFile.exists());
+        assertTrue(output.delete());
+    }
+
+    @Test
+    public void moveToDeletesTheTemporaryFileOnFailure() throws IOException {
+        File directory = Files.createTempDirectory("rxmp4parser").toFile();
+        File output = new File(new File(directory, "missing"), "output.mp4");
+        File temporaryFile = write(new File(directory, "output.mp4.part"), "new");
+        try {
+            MovieWriter.moveTo(temporaryFile, output);
+            fail();
+        } catch (IOException expected) {
+            assertFalse(temporaryFile.exists());
+            assertFalse(output.exists());
+        } finally {
+            directory.delete();
+        }
+    }
+
+    private static File write(File file, String content) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(content.getBytes("UTF-8"));
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+}
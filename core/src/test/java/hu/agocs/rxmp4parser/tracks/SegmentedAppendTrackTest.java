@@ -0,0 +1,50 @@
+package hu.agocs.rxmp4parser.tracks;
+
+import org.junit.Test;
+import org.mp4parser.boxes.iso14496.part12.SampleDependencyTypeBox;
+import org.mp4parser.muxer.Track;
+import org.mp4parser.muxer.WrappingTrack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import hu.agocs.rxmp4parser.TestMovies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SegmentedAppendTrackTest {
+
+    @Test
+    public void keepsSampleDependenciesOfEveryTrack() {
+        Track first = withDependencies(TestMovies.create(1).getTracks().get(0));
+        Track second = withDependencies(TestMovies.create(2).getTracks().get(0));
+
+        SegmentedAppendTrack track = new SegmentedAppendTrack(Arrays.asList(first, second));
+
+        assertEquals(75, track.getSampleDependencies().size());
+    }
+
+    @Test
+    public void dropsSampleDependenciesMissingFromATrack() {
+        Track first = withDependencies(TestMovies.create(1).getTracks().get(0));
+        Track second = TestMovies.create(2).getTracks().get(0);
+
+        assertNull(new SegmentedAppendTrack(Arrays.asList(first, second)).getSampleDependencies());
+        assertNull(new SegmentedAppendTrack(Arrays.asList(second, first)).getSampleDependencies());
+    }
+
+    private static Track withDependencies(Track track) {
+        final List<SampleDependencyTypeBox.Entry> dependencies = new ArrayList<>();
+        for (int i = 0; i < track.getSamples().size(); i++) {
+            dependencies.add(new SampleDependencyTypeBox.Entry(0));
+        }
+        return new WrappingTrack(track) {
+            @Override
+            public List<SampleDependencyTypeBox.Entry> getSampleDependencies() {
+                return dependencies;
+            }
+        };
+    }
+}
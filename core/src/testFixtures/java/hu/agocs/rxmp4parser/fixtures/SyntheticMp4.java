@@ -0,0 +1,85 @@
+package hu.agocs.rxmp4parser.fixtures;
+
+import org.mp4parser.muxer.Movie;
+import org.mp4parser.muxer.builder.DefaultMp4Builder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import hu.agocs.rxmp4parser.Constants;
+
+/**
+ * Writes deterministic MP4 files for the tests and the benchmarks. The first track is an avc1 video
+ * track with a sync sample every gopLength samples, the others are mp4a audio tracks. Every track lasts
+ * duration seconds, the video track has sampleCount samples and the audio tracks have samples of
+ * 1024 frames at 44100 Hz. The sample sizes and contents only depend on the seed, so the same
+ * parameters always give the same file. The samples are not decodable, they only have to be parsed,
+ * cut and muxed. See {@link SyntheticTrack} for their contents.
+ */
+public class SyntheticMp4 {
+
+    private static final int VIDEO_TIMESCALE = 90000;
+    private static final int AUDIO_TIMESCALE = 44100;
+    private static final int AUDIO_FRAMES_PER_SAMPLE = 1024;
+
+    private static final int VIDEO_SAMPLE_SIZE = 2000;
+    private static final int AUDIO_SAMPLE_SIZE = 300;
+
+    private final int trackCount;
+    private final int sampleCount;
+    private final int gopLength;
+    private final double duration;
+    private final long seed;
+
+    public SyntheticMp4(int trackCount, int sampleCount, int gopLength, double duration, long seed) {
+        if (trackCount < 1 || sampleCount < 1 || gopLength < 1 || duration <= 0) {
+            throw new IllegalArgumentException("Invalid fixture: " + trackCount + " tracks, " + sampleCount
+                    + " samples, GOP " + gopLength + ", " + duration + " s");
+        }
+        this.trackCount = trackCount;
+        this.sampleCount = sampleCount;
+        this.gopLength = gopLength;
+        this.duration = duration;
+        this.seed = seed;
+    }
+
+    public SyntheticMp4(int trackCount, int sampleCount, int gopLength, double duration) {
+        this(trackCount, sampleCount, gopLength, duration, 42);
+    }
+
+    public Movie createMovie() {
+        Movie movie = new Movie();
+        long videoDelta = Math.max(1, Math.round(duration * VIDEO_TIMESCALE / sampleCount));
+        movie.addTrack(new SyntheticTrack(Constants.VIDEO_TRACK, 1, VIDEO_TIMESCALE, sampleCount, videoDelta,
+                gopLength, VIDEO_SAMPLE_SIZE, seed));
+        int audioSamples = (int) Math.max(1, Math.round(duration * AUDIO_TIMESCALE / AUDIO_FRAMES_PER_SAMPLE));
+        for (int i = 1; i < trackCount; i++) {
+            movie.addTrack(new SyntheticTrack(Constants.SOUND_TRACK, i + 1, AUDIO_TIMESCALE, audioSamples,
+                    AUDIO_FRAMES_PER_SAMPLE, 0, AUDIO_SAMPLE_SIZE, seed + i));
+        }
+        return movie;
+    }
+
+    public File write(File file) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            new DefaultMp4Builder().build(createMovie()).writeContainer(fos.getChannel());
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    public File writeTemporary() throws IOException {
+        File file = File.createTempFile("synthetic-" + trackCount + "-" + sampleCount + "-" + gopLength + "-", ".mp4");
+        file.deleteOnExit();
+        return write(file);
+    }
+
+    @Override
+    public String toString() {
+        return "SyntheticMp4{" + trackCount + " tracks, " + sampleCount + " samples, GOP " + gopLength
+                + ", " + duration + " s}";
+    }
+}
@@ -0,0 +1,175 @@
+package hu.agocs.rxmp4parser.fixtures;
+
+import org.mp4parser.boxes.iso14496.part12.SampleDescriptionBox;
+import org.mp4parser.boxes.sampleentry.AudioSampleEntry;
+import org.mp4parser.boxes.sampleentry.VisualSampleEntry;
+import org.mp4parser.muxer.AbstractTrack;
+import org.mp4parser.muxer.Sample;
+import org.mp4parser.muxer.TrackMetaData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import hu.agocs.rxmp4parser.Constants;
+
+/**
+ * A track with a constant sample duration and sample sizes varying around sampleSize, an avc1 track
+ * for the video handler and an mp4a track for any other. With a positive gopLength every gopLength-th
+ * sample is a four times larger sync sample, otherwise there is no sync sample table. Every sample
+ * repeats its track id and sample index, so a sample read from a wrong position does not match.
+ * The contents are generated when a sample is read, only the sizes are kept in memory.
+ */
+public class SyntheticTrack extends AbstractTrack {
+
+    private final String handler;
+    // the id given here, a Movie may renumber the track
+    private final int trackId;
+    private final TrackMetaData trackMetaData = new TrackMetaData();
+    private final SampleDescriptionBox sampleDescriptionBox = new SampleDescriptionBox();
+    private final long[] sampleDurations;
+    private final long[] syncSamples;
+    private final int[] sampleSizes;
+    private final List<Sample> samples = new SampleList();
+
+    public SyntheticTrack(String handler, long trackId, long timescale, int sampleCount, long sampleDuration,
+                          int gopLength, int sampleSize, long seed) {
+        super(handler + trackId);
+        this.handler = handler;
+        this.trackId = (int) trackId;
+
+        trackMetaData.setTrackId(trackId);
+        trackMetaData.setTimescale(timescale);
+
+        sampleDurations = new long[sampleCount];
+        Arrays.fill(sampleDurations, sampleDuration);
+
+        if (gopLength > 0) {
+            syncSamples = new long[(sampleCount + gopLength - 1) / gopLength];
+            for (int i = 0; i < syncSamples.length; i++) {
+                syncSamples[i] = (long) i * gopLength + 1;
+            }
+        } else {
+            syncSamples = null;
+        }
+
+        // sync samples are larger, the others vary by up to half of the nominal size
+        sampleSizes = new int[sampleCount];
+        long state = seed;
+        for (int i = 0; i < sampleCount; i++) {
+            state = state * 6364136223846793005L + 1442695040888963407L;
+            int size = sampleSize / 2 + (int) ((state >>> 33) % sampleSize);
+            if (gopLength > 0 && i % gopLength == 0) {
+                size *= 4;
+            }
+            sampleSizes[i] = size;
+        }
+
+        if (Constants.VIDEO_TRACK.equals(handler)) {
+            VisualSampleEntry entry = new VisualSampleEntry("avc1");
+            entry.setDataReferenceIndex(1);
+            entry.setWidth(1280);
+            entry.setHeight(720);
+            entry.setDepth(24);
+            entry.setFrameCount(1);
+            sampleDescriptionBox.addBox(entry);
+            trackMetaData.setWidth(1280);
+            trackMetaData.setHeight(720);
+        } else {
+            AudioSampleEntry entry = new AudioSampleEntry("mp4a");
+            entry.setDataReferenceIndex(1);
+            entry.setChannelCount(2);
+            entry.setSampleSize(16);
+            entry.setSampleRate(timescale);
+            sampleDescriptionBox.addBox(entry);
+            trackMetaData.setVolume(1);
+        }
+    }
+
+    @Override
+    public SampleDescriptionBox getSampleDescriptionBox() {
+        return sampleDescriptionBox;
+    }
+
+    @Override
+    public long[] getSampleDurations() {
+        return sampleDurations;
+    }
+
+    @Override
+    public long[] getSyncSamples() {
+        return syncSamples;
+    }
+
+    @Override
+    public TrackMetaData getTrackMetaData() {
+        return trackMetaData;
+    }
+
+    @Override
+    public String getHandler() {
+        return handler;
+    }
+
+    @Override
+    public List<Sample> getSamples() {
+        return samples;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private class SampleList extends AbstractList<Sample> implements RandomAccess {
+
+        @Override
+        public Sample get(int index) {
+            return new SyntheticSample(trackId, index, sampleSizes[index]);
+        }
+
+        @Override
+        public int size() {
+            return sampleSizes.length;
+        }
+    }
+
+    private static class SyntheticSample implements Sample {
+
+        private final int trackId;
+        private final int index;
+        private final int size;
+
+        SyntheticSample(int trackId, int index, int size) {
+            this.trackId = trackId;
+            this.index = index;
+            this.size = size;
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            ByteBuffer data = asByteBuffer();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public ByteBuffer asByteBuffer() {
+            ByteBuffer data = ByteBuffer.allocate(size);
+            while (data.remaining() >= 8) {
+                data.putInt(trackId).putInt(index);
+            }
+            data.clear();
+            return data;
+        }
+    }
+}
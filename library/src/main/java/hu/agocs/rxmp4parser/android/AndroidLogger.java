@@ -0,0 +1,18 @@
+package hu.agocs.rxmp4parser.android;
+
+import android.util.Log;
+
+import hu.agocs.rxmp4parser.Logger;
+import hu.agocs.rxmp4parser.RxMp4Parser;
+
+public class AndroidLogger implements Logger {
+
+    public static void install() {
+        RxMp4Parser.setLogger(new AndroidLogger());
+    }
+
+    @Override
+    public void error(String tag, String message) {
+        Log.e(tag, message);
+    }
+}